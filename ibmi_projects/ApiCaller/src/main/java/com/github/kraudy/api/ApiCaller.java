@@ -1,15 +1,20 @@
 package com.github.kraudy.api;
 
 import java.beans.PropertyVetoException;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Timestamp;
 import java.sql.SQLException;
 import java.sql.Statement;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 import com.ibm.as400.access.AS400;
 import com.ibm.as400.access.AS400SecurityException;
@@ -19,11 +24,6 @@ import com.ibm.as400.access.CommandCall;
 import com.ibm.as400.access.User;
 
 import com.ibm.as400.access.AS400Bin4;
-import com.ibm.as400.access.AS400Message;
-import com.ibm.as400.access.AS400Text;
-import com.ibm.as400.access.ProgramCall;
-import com.ibm.as400.access.ProgramParameter;
-import com.ibm.as400.access.UserSpace;
 
 
 import io.github.theprez.dotenv_ibmi.IBMiDotEnv;
@@ -33,11 +33,12 @@ import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 @Command (name = "apiCaller", description = "System API Caller", mixinStandardHelpOptions = true, version = "ApiCaller 0.0.1")
-public class ApiCaller {
+public class ApiCaller implements Runnable {
   public static final String INVARIANT_CCSID = "37"; // EBCDIC
   private final AS400 system;
   private final Connection connection;
   private final User currentUser;
+  private final ApiSession api; // Converters and API call templates of this session
 
   public enum SourceType { 
     RPG, RPGLE, SQLRPGLE, CLP, CLLE, SQL;
@@ -132,14 +133,14 @@ public class ApiCaller {
   }
 
   /* Object attributes. Required params */
-  @Option(names = { "-l", "--lib" }, required = true, description = "Target library for object", converter = LibraryConverter.class)
+  @Option(names = { "-l", "--lib" }, description = "Target library for object", converter = LibraryConverter.class)
   private String library;
 
   //TODO: --obj, -t and -st could be made in one: hello.pgm.rpgle and just parse it. Maybe the last could be optional if the object is found.
-  @Option(names = "--obj", required = true, description = "Object name", converter = ObjectNameConverter.class)
+  @Option(names = "--obj", description = "Object name", converter = ObjectNameConverter.class)
   private String objectName;
 
-  @Option(names = {"-t","--type"}, required = true, description = "Object type (e.g., PGM, SRVPGM)", converter = ObjectTypeConverter.class)
+  @Option(names = {"-t","--type"}, description = "Object type (e.g., PGM, SRVPGM)", converter = ObjectTypeConverter.class)
   private ObjectType objectType;
 
   /* Source-related params. Good to have */
@@ -155,6 +156,25 @@ public class ApiCaller {
   @Option(names = {"-st","--source-type"}, description = "Source type (e.g., RPGLE, CLLE) (defaults to retrieved from object if possible)", converter = SourceTypeConverter.class)
   private SourceType sourceType;
 
+  /* Inventory mode */
+  @Option(names = "--inventory", arity = "1..*", description = "Libraries whose programs, service programs and modules are all described, as NDJSON", converter = LibraryConverter.class)
+  private List<String> inventoryLibraries;
+
+  @Option(names = "--sessions", description = "Host sessions the --inventory API calls are spread over (default: 8)")
+  private int sessions = 8;
+
+  @Option(names = "--out", description = "File for --inventory (default: stdout)")
+  private File outFile;
+
+  @Option(names = "--cache", description = "Attribute cache file for --inventory. Objects not recreated since they were cached skip the API calls")
+  private File cacheFile;
+
+  @Option(names = "--cache-size", description = "Most objects kept in --cache, least recently used are dropped first (default: 200000)")
+  private int cacheSize = 200_000;
+
+  @Option(names = "-v", description = "Verbose output")
+  private boolean verbose = false;
+
   /* Constructors */
   public ApiCaller(AS400 system) throws Exception {
     this(system, new AS400JDBCDataSource(system).getConnection());
@@ -171,138 +191,73 @@ public class ApiCaller {
     this.currentUser = new User(system, system.getUserId());
     this.currentUser.loadUserInformation();
 
+    this.api = new ApiSession(system);
   }
 
   public void run(){
-    // odes.retrieveObjectInfo();
-    //String dbgView = getDbgViewFromBoundModule(targetLibrary, objectName, rsMod.getString("BOUND_MODULE").trim());
+    try {
+      if (inventoryLibraries != null) {
+        inventory();
+        return;
+      }
+      if (library == null || objectName == null || objectType == null) {
+        throw new IllegalArgumentException("-l, --obj and -t are required unless --inventory is given.");
+      }
+      retrieveObjectInfo(objectName, library);
+    } catch (Exception e) {
+      e.printStackTrace();
+    } finally {
+      cleanup();
+    }
   }
 
-  private String getDbgViewFromBoundModule(String pgmLib, String pgmName, String entryModule) throws Exception {
-    // Use QBNLPGMI PGML0110 to get bound module creation command
-    String usName = "PGMLIST";
-    String usLib = "QTEMP";
-    UserSpace us = new UserSpace(system, "/QSYS.LIB/" + usLib + ".LIB/" + usName + ".USRSPC");
-    us.setMustUseProgramCall(true);
-    us.setMustUseSockets(true);
-    int initialSize = 4096 * 10; // Larger for PGML0110 variable entries and command data
-    us.create(initialSize, true, " ", (byte) 0x00, "Temp user space for QBNLPGMI", "*USE");
-
-    String qualUs = String.format("%-10s%-10s", usName, usLib);
-    String qualPgm = String.format("%-10s%-10s", pgmName, pgmLib);
-
-    ProgramCall pc = new ProgramCall(system);
-    pc.setProgram("/QSYS.LIB/QBNLPGMI.PGM");
-
-    ProgramParameter[] parms = new ProgramParameter[4];
-    parms[0] = new ProgramParameter(new AS400Text(20, system).toBytes(qualUs)); // Qualified user space
-    parms[1] = new ProgramParameter(new AS400Text(8, system).toBytes("PGML0110")); // Format
-    parms[2] = new ProgramParameter(new AS400Text(20, system).toBytes(qualPgm)); // Qualified program name
-    byte[] errorCode = new byte[32];
-    new AS400Bin4().toBytes(0, errorCode, 0);
-    parms[3] = new ProgramParameter(errorCode); // Error code
-
-    pc.setParameterList(parms);
-
-    if (!pc.run()) {
-        AS400Message[] msgs = pc.getMessageList();
-        throw new Exception("QBNLPGMI API call failed: " + (msgs.length > 0 ? msgs[0].getText() : "Unknown error"));
+  private void inventory() throws Exception {
+    if (sessions < 1) {
+      throw new IllegalArgumentException("--sessions must be at least 1.");
     }
-
-    // Read user space
-    byte[] data = new byte[initialSize];
-    us.read(data, 0);
-
-    AS400Bin4 bin4 = new AS400Bin4();
-
-    int listOffset = bin4.toInt(data, 116);
-    int numEntries = bin4.toInt(data, 120);
-    int genEntrySize = bin4.toInt(data, 124);  // Expect 0 for PGML0110
-
-    if (numEntries == 0) {
-        us.delete();
-        return ValCmd.NONE.toString();
+    if (cacheSize < 1) {
+      throw new IllegalArgumentException("--cache-size must be at least 1.");
     }
-
-    String command = "";
-    int currentOffset = listOffset;
-    AS400Text text10 = new AS400Text(10, system);
-
-    for (int i = 0; i < numEntries; i++) {
-        int entrySize = bin4.toInt(data, currentOffset); // Size of this entry at offset 0
-        String modName = text10.toObject(data, currentOffset + 24).toString().trim(); // Bound module name at +24
-
-        if (modName.equals(entryModule)) { // Match entry module
-            System.out.println("Found module: " + modName);
-            int cmdOffset = bin4.toInt(data, currentOffset + 346); // Offset to creation data
-            int cmdLength = bin4.toInt(data, currentOffset + 350); // Length of creation data
-            //int cmdLength = bin4.toInt(data, 0); // Length of creation data
-            if (cmdLength > 0) {
-                System.out.println("Command length: " + String.valueOf(cmdLength));
-                //cmdLength = 30000; //Increasing this gives the same information
-                AS400Text text = new AS400Text(cmdLength, system);
-                command = text.toObject(data, cmdOffset).toString().trim().toUpperCase();
-                System.out.println("Full command: " + command);
-                break;
-            }
-        }
-
-        currentOffset += entrySize; // Advance by variable entry size
+    AttributeCache cache = null;
+    if (cacheFile != null) {
+      try {
+        cache = AttributeCache.load(cacheFile, cacheSize);
+      } catch (IOException e) {
+        System.err.println("Could not load cache " + cacheFile + ": describing every object");
+        cache = new AttributeCache(cacheSize);
+      }
     }
-
-    us.delete();
-
-    if (command.isEmpty()) {
-        return ValCmd.NONE.toString();
+    List<String[]> objects = Inventory.listObjects(connection, inventoryLibraries);
+    System.err.println("Describing " + objects.size() + " objects of " + String.join(" ", inventoryLibraries) + " over " + sessions + " sessions");
+    try (Inventory inventory = new Inventory(system, sessions)) {
+      Inventory.Result result;
+      if (outFile == null) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        result = inventory.run(objects, out, cache); // Flushed, System.out is left open
+      } else {
+        try (Writer out = Files.newBufferedWriter(outFile.toPath(), StandardCharsets.UTF_8)) {
+          result = inventory.run(objects, out, cache);
+        }
+      }
+      System.err.println(result.summary());
     }
-
-    // Parse DBGVIEW as before
-    int dbgIndex = command.indexOf("DBGVIEW(");
-    if (dbgIndex == -1) {
-        return ValCmd.NONE.toString();
+    if (cache != null) {
+      cache.save(cacheFile);
     }
-    int start = dbgIndex + "DBGVIEW(".length();
-    int end = command.indexOf(")", start);
-    if (end == -1) {
-        return ValCmd.NONE.toString();
-    }
-    String value = command.substring(start, end).trim().replace("'", "");
-    return "*" + value;
   }
 
   //Module info cannot be get directly from module for ile objects
   private String getDbgViewFromModule(String moduleLib, String moduleName) throws Exception {
-    ProgramCall pc = new ProgramCall(system);
-    pc.setProgram("/QSYS.LIB/QBNRMODI.PGM");
-
     int recvLen = 4096; // Large enough for the command string
-    ProgramParameter[] parms = new ProgramParameter[5];
-    parms[0] = new ProgramParameter(recvLen); // Receiver
-    parms[1] = new ProgramParameter(new AS400Bin4().toBytes(recvLen)); // Length
-    parms[2] = new ProgramParameter(new AS400Text(8, system).toBytes("MODI0200")); // Format
-    String qualName = String.format("%-10s%-10s", moduleName, moduleLib);
-    parms[3] = new ProgramParameter(new AS400Text(20, system).toBytes(qualName)); // Qualified module name
-    byte[] errorCode = new byte[16];
-    new AS400Bin4().toBytes(0, errorCode, 0); // Bytes provided = 0 (throw exceptions)
-    parms[4] = new ProgramParameter(errorCode); // Error code
-
-    pc.setParameterList(parms);
-
-    if (!pc.run()) {
-        AS400Message[] msgs = pc.getMessageList();
-        throw new Exception("QBNRMODI API call failed: " + (msgs.length > 0 ? msgs[0].getText() : "Unknown error"));
-    }
-
-    byte[] data = parms[0].getOutputData();
-    AS400Bin4 bin4 = new AS400Bin4();
+    byte[] data = api.receiver("QBNRMODI", "MODI0200", recvLen).run(moduleName, moduleLib);
+    AS400Bin4 bin4 = ApiSession.BIN4;
     int cmdOffset = bin4.toInt(data, 8);
     int cmdLength = bin4.toInt(data, 12);
     if (cmdLength == 0) {
         return ValCmd.NONE.toString(); // No command data; default to *NONE
     }
 
-    AS400Text text = new AS400Text(cmdLength, system);
-    String command = text.toObject(data, cmdOffset).toString().trim().toUpperCase();
+    String command = api.text(cmdLength).toObject(data, cmdOffset).toString().trim().toUpperCase();
 
     System.out.println("Full command: " + command);
 
@@ -352,163 +307,65 @@ public class ApiCaller {
         throw new Exception("Object type " + objectType.name() + " not supported for retrieving compilation params.");
     }
 
-    ProgramCall pc = new ProgramCall(system);
-    pc.setProgram("/QSYS.LIB/" + apiPgm + ".PGM");
-
     int recvLen = 2048; // Sufficient for PGMI0100/SPGI0100/MODI0100
-    ProgramParameter[] parms = new ProgramParameter[5];
-    parms[0] = new ProgramParameter(recvLen); // Receiver
-    parms[1] = new ProgramParameter(new AS400Bin4().toBytes(recvLen)); // Length of receiver
-    parms[2] = new ProgramParameter(new AS400Text(8, system).toBytes(format)); // Format
-    String qualName = String.format("%-10s%-10s", objectName, targetLibrary);
-    parms[3] = new ProgramParameter(new AS400Text(20, this.system).toBytes(qualName)); // Qualified object name
-    byte[] errorCode = new byte[16];
-    new AS400Bin4().toBytes(0, errorCode, 0); // Bytes provided = 0 to throw exceptions
-    parms[4] = new ProgramParameter(errorCode); // Error code
-
-    pc.setParameterList(parms);
-
-    if (!pc.run()) {
-      AS400Message[] msgs = pc.getMessageList();
-      throw new Exception("API call failed: " + (msgs.length > 0 ? msgs[0].getText() : "Unknown error"));
-    }
-
-    byte[] data = parms[0].getOutputData();
-    //Map<String, Object> info = new HashMap<>();
-
-    AS400Bin4 bin4 = new AS400Bin4();
-    AS400Text text10 = new AS400Text(10, system);
-    AS400Text text13 = new AS400Text(13, system);
-    AS400Text text1 = new AS400Text(1, system);
-    AS400Text text50 = new AS400Text(50, system);
-    AS400Text text30 = new AS400Text(30, system);
-
-    //TODO: Remove this
-    Map<String, Object> objInfo = new HashMap<>();
-
-    int offset = 0;
-    objInfo.put("bytesReturned", bin4.toInt(data, offset)); offset += 4;
-    objInfo.put("bytesAvailable", bin4.toInt(data, offset)); offset += 4;
-    objInfo.put("programName", text10.toObject(data, offset).toString().trim()); offset += 10;
-    objInfo.put("programLibrary", text10.toObject(data, offset).toString().trim()); offset += 10;
-    objInfo.put("owner", text10.toObject(data, offset).toString().trim()); offset += 10;
-    objInfo.put("attribute", text10.toObject(data, offset).toString().trim()); offset += 10;
-    objInfo.put("creationDateTime", text13.toObject(data, offset).toString().trim()); offset += 13;
-    objInfo.put("sourceFile", text10.toObject(data, offset).toString().trim()); offset += 10;
-    objInfo.put("sourceLibrary", text10.toObject(data, offset).toString().trim()); offset += 10;
-    objInfo.put("sourceName", text10.toObject(data, offset).toString().trim()); offset += 10;
-    objInfo.put("sourceUpdatedDateTime", text13.toObject(data, offset).toString().trim()); offset += 13;
-    objInfo.put("observable", text1.toObject(data, offset).toString().trim()); offset += 1;
-    objInfo.put("userProfileOption", text1.toObject(data, offset).toString().trim()); offset += 1;
-    objInfo.put("useAdoptedAuthority", text1.toObject(data, offset).toString().trim()); offset += 1;
-    objInfo.put("logCommands", text1.toObject(data, offset).toString().trim()); offset += 1;
-    objInfo.put("allowRTVCLSRC", text1.toObject(data, offset).toString().trim()); offset += 1;
-    objInfo.put("fixDecimalData", text1.toObject(data, offset).toString().trim()); offset += 1;
-
-
-    objInfo.put("textDescription", text50.toObject(data, offset).toString().trim()); offset += 50;
-    objInfo.put("typeOfProgram", text1.toObject(data, offset).toString().trim()); offset += 1;
-    objInfo.put("teraspaceEnabled", text1.toObject(data, offset).toString().trim()); offset += 1;
-    offset += 58; // Reserved
-    objInfo.put("minParameters", bin4.toInt(data, offset)); offset += 4;
-    objInfo.put("maxParameters", bin4.toInt(data, offset)); offset += 4;
-    offset = 368; // Jump to activation group (adjust if needed for SPGI/MODI differences)
-    if (objectType != ObjectType.MODULE) { // Modules don't have ACTGRP
-      objInfo.put("activationGroupAttribute", text30.toObject(data, offset).toString().trim());
-    }
-    // TODO: Parse additional fields as needed
+    byte[] qualName = api.qualifiedName(objectName, targetLibrary);
+    byte[] data = api.receiver(apiPgm, format, recvLen).run(qualName);
+    // Fields are decoded from the receiver only when read
+    RecordLayout.Record info = new RecordLayout.Record(api.decoder()).wrap(data);
 
     // If this is an ILE program ('B'), retrieve module information for source details
-    String typeOfProgram = (String) objInfo.get("typeOfProgram");
-    System.out.println("typeOfProgram: " + typeOfProgram);
-
-    if ("B".equals(typeOfProgram) && objectType == ObjectType.PGM) {
-      System.out.println("Doing retrieveModuleInfo");
-      retrieveModuleInfo(qualName);
+    if (objectType == ObjectType.PGM) {
+      char typeOfProgram = info.charAt(RecordLayout.PGMI0100.TYPE_OF_PROGRAM);
+      if (verbose) System.out.println("typeOfProgram: " + typeOfProgram);
+      if (typeOfProgram == 'B') {
+        retrieveModuleInfo(qualName, info.text(RecordLayout.PGMI0100.ENTRY_MODULE), info.text(RecordLayout.PGMI0100.ENTRY_MODULE_LIBRARY));
+      }
     }
 
     System.out.println("All data: ");
-    for (String ob : objInfo.keySet()){
-      System.out.println(ob + ": " + objInfo.get(ob));
+    for (RecordLayout.Field field : RecordLayout.fields(format)) {
+      if (!info.has(field)) continue;
+      System.out.println(field.name() + ": " + info.value(field));
     }
 
   }
 
-  //TODO:  handle/select from multiple entries and choose the main module
-  private void retrieveModuleInfo(String qualName) throws Exception {
-    // Import required: import com.ibm.as400.access.UserSpace;
-    String usName = "PGMLIST";
-    String usLib = "QTEMP";
-    UserSpace us = new UserSpace(system, "/QSYS.LIB/" + usLib + ".LIB/" + usName + ".USRSPC");
-    us.setMustUseProgramCall(true);  // Ensure operations in same job for QTEMP
-    us.setMustUseSockets(true);      // Force sockets to avoid native issues
-    int initialSize = 2048 * 10; // Sufficient buffer, adjust if needed for multi-module
-    //us.create(initialSize, true, "", (byte) 0x00, "Temp user space for QBNLPGMI", "*USE");
-    us.create(initialSize, true, " ", (byte) 0x00, "Temp user space for QBNLPGMI", "*USE");  // Added space for extended attribute to enable native read support
-
-    String qualUs = String.format("%-10s%-10s", usName, usLib);
-
-    ProgramCall pc = new ProgramCall(system);
-    pc.setProgram("/QSYS.LIB/QBNLPGMI.PGM");
-
-    byte[] errorCode = new byte[32];
-    new AS400Bin4().toBytes(0, errorCode, 0);
-
-    System.out.println("Inside retrieveModuleInfo");
-
-    ProgramParameter[] parms = new ProgramParameter[4];
-    parms[0] = new ProgramParameter(new AS400Text(20, system).toBytes(qualUs)); // Qualified user space name
-    parms[1] = new ProgramParameter(new AS400Text(8, system).toBytes("PGML0100")); // Format
-    parms[2] = new ProgramParameter(new AS400Text(20, system).toBytes(qualName)); // Qualified program name
-    parms[3] = new ProgramParameter(errorCode); // Error code
-
-    pc.setParameterList(parms);
-
-    System.out.println("Before pc.run()");
-
-    if (!pc.run()) {
-      AS400Message[] msgs = pc.getMessageList();
-      throw new Exception("QBNLPGMI API call failed: " + (msgs.length > 0 ? msgs[0].getText() : "Unknown error"));
-    }
-
-    System.out.println("After pc.run()");
-
-    // Read the entire user space
-    byte[] data = new byte[initialSize];
-    us.read(data, 0);
-
-    System.out.println("us.read()");
-
-    AS400Bin4 bin4 = new AS400Bin4();
-    int listOffset = bin4.toInt(data, 122); // Offset to list data section
-    int numEntries = bin4.toInt(data, 126); // Number of list entries
-    int entrySize = bin4.toInt(data, 130); // Size of each entry
-
-    System.out.println("entrySize: " + entrySize);
-
-     //TODO: Remove this
-    Map<String, Object> objInfo = new HashMap<>();
-
-    if (numEntries > 0) {
-      // For simplicity, take the first module (common for single-module bound programs)
-      int entryOffset = listOffset;
-      AS400Text text10 = new AS400Text(10, system);
-
-      // Update objInfo with module source info
-      objInfo.put("sourceFile", text10.toObject(data, entryOffset + 56).toString().trim());
-      objInfo.put("sourceLibrary", text10.toObject(data, entryOffset + 66).toString().trim());
-      objInfo.put("sourceName", text10.toObject(data, entryOffset + 76).toString().trim());
+  // Source and DBGVIEW of the module with the program entry procedure. With -v every bound module is listed too
+  private void retrieveModuleInfo(byte[] qualName, String entryModule, String entryModuleLibrary) throws Exception {
+    UserSpacePool.ListSpace space = api.userSpaces().acquire();
+    try {
+      api.userSpace("QBNLPGMI", "PGML0110", space.name(), space.library()).run(qualName);
 
-      // TODO: If multi-module, you may need logic to select the appropriate one or aggregate
-    } else {
-      throw new Exception("No modules found in ILE program.");
+      // Entries are read a chunk of the list at a time, the scan stops at the entry module unless -v
+      ListEntries entries = space.readHeader().entries();
+      if (!entries.hasNext()) {
+        throw new Exception("No modules found in ILE program.");
+      }
+      while (entries.hasNext()) {
+        RecordLayout.Record entry = entries.next();
+        if (verbose) {
+          System.out.println("Module " + entry.text(RecordLayout.PGML0110.MODULE_LIBRARY) + "/" + entry.text(RecordLayout.PGML0110.MODULE_NAME) + ": " +
+                             entry.text(RecordLayout.PGML0110.SOURCE_LIBRARY) + "/" + entry.text(RecordLayout.PGML0110.SOURCE_FILE) +
+                             "(" + entry.text(RecordLayout.PGML0110.SOURCE_NAME) + ")");
+        }
+        if (!entry.is(RecordLayout.PGML0110.MODULE_NAME, entryModule) ||
+            !entry.is(RecordLayout.PGML0110.MODULE_LIBRARY, entryModuleLibrary)) continue;
+
+        System.out.println("Entry module: " + entryModuleLibrary + "/" + entryModule);
+        System.out.println("SOURCE_FILE: " + entry.text(RecordLayout.PGML0110.SOURCE_FILE));
+        System.out.println("SOURCE_LIBRARY: " + entry.text(RecordLayout.PGML0110.SOURCE_LIBRARY));
+        System.out.println("SOURCE_NAME: " + entry.text(RecordLayout.PGML0110.SOURCE_NAME));
+        System.out.println("SOURCE_UPDATED_DATE_TIME: " + entry.text(RecordLayout.PGML0110.SOURCE_UPDATED_DATE_TIME));
+        System.out.println("DBGVIEW: " + Inventory.dbgView(space, space.listOffset(), api.decoder(), entry));
+        if (!verbose) break;
+      }
+    } finally {
+      api.userSpaces().release(space);
     }
-
-    // Optional: Delete the user space after use
-    us.delete();    
   }
 
   private void cleanup(){
+    api.close();
     try {
       if (connection != null && !connection.isClosed()) {
         connection.close();
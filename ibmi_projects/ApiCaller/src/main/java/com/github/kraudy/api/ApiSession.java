@@ -0,0 +1,144 @@
+package com.github.kraudy.api;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ibm.as400.access.AS400;
+import com.ibm.as400.access.AS400Bin4;
+import com.ibm.as400.access.AS400Message;
+import com.ibm.as400.access.AS400Text;
+import com.ibm.as400.access.ProgramCall;
+import com.ibm.as400.access.ProgramParameter;
+
+/*
+ * Everything an API call needs that does not change between calls, built once per session:
+ * text converters per length, and per API and format a ProgramCall with its parameter list already filled,
+ * so a call only sets the qualified object name and runs.
+ * One per AS400 session, not thread safe: give each thread its own session.
+ */
+public class ApiSession implements AutoCloseable {
+  public static final AS400Bin4 BIN4 = new AS400Bin4(); // Holds no state, shared by every session
+  private static final int ERROR_CODE_LENGTH = 16; // Bytes provided = 0: errors come back as messages
+
+  private final AS400 system;
+  private AS400Text[] texts = new AS400Text[64]; // length -> converter, grown on demand
+  private EbcdicDecoder decoder;
+  private UserSpacePool userSpaces;
+  private final Map<String, ApiCall> calls = new HashMap<>(); // api + format -> template
+
+  public ApiSession(AS400 system) {
+    this.system = system;
+  }
+
+  public AS400 system() {
+    return system;
+  }
+
+  /* Converter for a fixed length text field in the job CCSID */
+  public AS400Text text(int length) {
+    if (length >= texts.length) {
+      AS400Text[] grown = new AS400Text[Math.max(length + 1, texts.length * 2)];
+      System.arraycopy(texts, 0, grown, 0, texts.length);
+      texts = grown;
+    }
+    AS400Text text = texts[length];
+    if (text == null) {
+      text = new AS400Text(length, system);
+      texts[length] = text;
+    }
+    return text;
+  }
+
+  /* Table decoder for receivers, in the CCSID of the session job */
+  public EbcdicDecoder decoder() {
+    if (decoder == null) decoder = EbcdicDecoder.of(system.getCcsid(), text(1));
+    return decoder;
+  }
+
+  /* QTEMP user spaces for the list APIs of this session */
+  public UserSpacePool userSpaces() {
+    if (userSpaces == null) userSpaces = new UserSpacePool(this);
+    return userSpaces;
+  }
+
+  @Override
+  public void close() {
+    if (userSpaces != null) userSpaces.close();
+  }
+
+  /* 20 byte qualified name: object name then library, both blank padded to 10 */
+  public byte[] qualifiedName(String name, String library) {
+    byte[] qualified = new byte[20];
+    text(10).toBytes(name, qualified, 0);
+    text(10).toBytes(library, qualified, 10);
+    return qualified;
+  }
+
+  /*
+   * Retrieve APIs (QCLRPGMI, QBNRSPGM, QBNRMODI...): receiver, length of receiver, format, qualified name, error code.
+   * run() returns the receiver.
+   */
+  public ApiCall receiver(String api, String format, int receiverLength) throws Exception {
+    ApiCall call = calls.get(api + format);
+    if (call != null && call.parms[0].getOutputDataLength() >= receiverLength) return call;
+    ProgramParameter[] parms = new ProgramParameter[5];
+    parms[0] = new ProgramParameter(receiverLength); // Receiver
+    parms[1] = new ProgramParameter(BIN4.toBytes(receiverLength)); // Length of receiver
+    parms[2] = new ProgramParameter(text(8).toBytes(format)); // Format
+    parms[3] = new ProgramParameter(new byte[20]); // Qualified object name, set on each call
+    parms[4] = new ProgramParameter(new byte[ERROR_CODE_LENGTH]); // Error code
+    call = new ApiCall(api, parms, 3, 0);
+    calls.put(api + format, call);
+    return call;
+  }
+
+  /*
+   * List APIs that write to a user space (QBNLPGMI...): qualified user space, format, qualified name, error code.
+   * run() returns null, the list is read from the user space.
+   */
+  public ApiCall userSpace(String api, String format, String spaceName, String spaceLibrary) throws Exception {
+    String key = api + format + spaceLibrary + "/" + spaceName;
+    ApiCall call = calls.get(key);
+    if (call != null) return call;
+    ProgramParameter[] parms = new ProgramParameter[4];
+    parms[0] = new ProgramParameter(qualifiedName(spaceName, spaceLibrary)); // Qualified user space
+    parms[1] = new ProgramParameter(text(8).toBytes(format)); // Format
+    parms[2] = new ProgramParameter(new byte[20]); // Qualified object name, set on each call
+    parms[3] = new ProgramParameter(new byte[ERROR_CODE_LENGTH]); // Error code
+    call = new ApiCall(api, parms, 2, -1);
+    calls.put(key, call);
+    return call;
+  }
+
+  /* One prepared API: its own ProgramCall, reused for every call of the session */
+  public class ApiCall {
+    private final String api;
+    private final ProgramCall pc;
+    private final ProgramParameter[] parms;
+    private final int nameParm;
+    private final int receiverParm; // -1 if the API has no receiver
+
+    private ApiCall(String api, ProgramParameter[] parms, int nameParm, int receiverParm) throws Exception {
+      this.api = api;
+      this.parms = parms;
+      this.nameParm = nameParm;
+      this.receiverParm = receiverParm;
+      this.pc = new ProgramCall(system);
+      pc.setProgram("/QSYS.LIB/" + api + ".PGM", parms);
+    }
+
+    /* Runs the API for the object, returns the receiver (null for user space APIs) */
+    public byte[] run(String name, String library) throws Exception {
+      return run(qualifiedName(name, library));
+    }
+
+    public byte[] run(byte[] qualifiedName) throws Exception {
+      parms[nameParm].setInputData(qualifiedName);
+      if (!pc.run()) {
+        AS400Message[] msgs = pc.getMessageList();
+        throw new Exception(api + " API call failed: " + (msgs.length > 0 ? msgs[0].getText() : "Unknown error"));
+      }
+      return receiverParm < 0 ? null : parms[receiverParm].getOutputData();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package com.github.kraudy.api;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Described objects saved to a local file, so an unchanged object costs no API call on the next run.
+ * Key LIB/NAME/*TYPE, value the creation timestamp the APIs returned (CYYMMDDHHMMSS) and the NDJSON line.
+ * An entry is only used while the catalog creation timestamp of the object still matches: recreating the object
+ * is what changes its compile attributes. Least recently used entries are dropped past maxEntries.
+ * Plain text, least recently used first, one tab separated line per entry:
+ *   <objectKey> <creationDateTime> <json>
+ * Not thread safe, only the inventory scheduler thread uses it.
+ */
+public class AttributeCache {
+  static final String HEADER = "# ApiCaller attribute cache v1";
+
+  private static class CachedLine {
+    final String created;
+    final String json;
+
+    CachedLine(String created, String json) {
+      this.created = created;
+      this.json = json;
+    }
+  }
+
+  private final int maxEntries;
+  private final Map<String, CachedLine> entries;
+  private long hits, misses;
+
+  public AttributeCache(int maxEntries) {
+    if (maxEntries < 1) throw new IllegalArgumentException("Attribute cache size must be at least 1");
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<String, CachedLine>(16, 0.75f, true) { // Access order: eldest is least recently used
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedLine> eldest) {
+        return size() > AttributeCache.this.maxEntries;
+      }
+    };
+  }
+
+  public static String key(String library, String name, String type) {
+    return library + "/" + name + "/" + type;
+  }
+
+  /* Cached line if the object was not recreated since, null otherwise */
+  public String get(String key, String created) {
+    CachedLine entry = entries.get(key);
+    if (entry != null && entry.created.equals(created)) {
+      hits++;
+      return entry.json;
+    }
+    misses++;
+    return null;
+  }
+
+  public void put(String key, String created, String json) {
+    if (created == null || created.isEmpty() || json.indexOf('\n') >= 0) return;
+    entries.put(key, new CachedLine(created, json));
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long hits() {
+    return hits;
+  }
+
+  public long misses() {
+    return misses;
+  }
+
+  /* Catalog timestamp (OBJECT_STATISTICS OBJCREATED) in the CYYMMDDHHMMSS form of the APIs */
+  public static String creationStamp(Timestamp created) {
+    if (created == null) return "";
+    LocalDateTime time = created.toLocalDateTime();
+    return String.format("%d%02d%02d%02d%02d%02d%02d", (time.getYear() - 1900) / 100, time.getYear() % 100,
+        time.getMonthValue(), time.getDayOfMonth(), time.getHour(), time.getMinute(), time.getSecond());
+  }
+
+  public static AttributeCache load(File file, int maxEntries) throws IOException {
+    AttributeCache cache = new AttributeCache(maxEntries);
+    if (!file.exists()) return cache;
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      if (line == null || !line.equals(HEADER)) {
+        throw new IOException("Not an attribute cache: " + file);
+      }
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) continue;
+        String[] fields = line.split("\t", 3);
+        if (fields.length != 3) {
+          throw new IOException("Malformed cache line: " + line);
+        }
+        cache.entries.put(fields[0], new CachedLine(fields[1], fields[2]));
+      }
+    }
+    return cache;
+  }
+
+  /* Writes to a temporary file first so a failed run never leaves half a cache behind */
+  public void save(File file) throws IOException {
+    Path target = file.toPath().toAbsolutePath();
+    Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      for (Map.Entry<String, CachedLine> entry : entries.entrySet()) {
+        writer.write(entry.getKey() + "\t" + entry.getValue().created + "\t" + entry.getValue().json);
+        writer.newLine();
+      }
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+  }
+}
@@ -0,0 +1,78 @@
+package com.github.kraudy.api;
+
+import java.nio.charset.Charset;
+
+import com.ibm.as400.access.AS400Text;
+
+/*
+ * Single byte EBCDIC to char through a 256 entry table. Fields are trimmed on the bytes (blanks and nulls),
+ * so decoding a field allocates only the returned String, and nothing at all for an empty one or a compare.
+ * Receivers of the retrieve APIs come in the job CCSID, 37 on most systems.
+ */
+public final class EbcdicDecoder {
+  private static final byte BLANK = 0x40;
+
+  public static final EbcdicDecoder CCSID_37 = new EbcdicDecoder(37, tableOf(Charset.forName("IBM037")));
+
+  private final int ccsid;
+  private final char[] table;
+
+  private EbcdicDecoder(int ccsid, char[] table) {
+    this.ccsid = ccsid;
+    this.table = table;
+  }
+
+  /* Table of any other single byte CCSID, converted once byte by byte through jt400 */
+  public static EbcdicDecoder of(int ccsid, AS400Text oneByte) {
+    if (ccsid == 37) return CCSID_37;
+    char[] table = new char[256];
+    byte[] single = new byte[1];
+    for (int b = 0; b < 256; b++) {
+      single[0] = (byte) b;
+      String value = (String) oneByte.toObject(single);
+      table[b] = value.isEmpty() ? ' ' : value.charAt(0);
+    }
+    return new EbcdicDecoder(ccsid, table);
+  }
+
+  private static char[] tableOf(Charset charset) {
+    byte[] all = new byte[256];
+    for (int b = 0; b < 256; b++) all[b] = (byte) b;
+    return new String(all, charset).toCharArray();
+  }
+
+  public int ccsid() {
+    return ccsid;
+  }
+
+  public char charAt(byte[] data, int offset) {
+    return table[data[offset] & 0xFF];
+  }
+
+  /* Field without leading and trailing blanks, like AS400Text.toObject(...).toString().trim() */
+  public String decode(byte[] data, int offset, int length) {
+    int start = offset, end = offset + length;
+    while (start < end && isPad(data[start])) start++;
+    while (end > start && isPad(data[end - 1])) end--;
+    if (start == end) return "";
+    char[] chars = new char[end - start];
+    for (int i = start; i < end; i++) chars[i - start] = table[data[i] & 0xFF];
+    return new String(chars);
+  }
+
+  /* Compares the trimmed field with value without decoding it */
+  public boolean equals(byte[] data, int offset, int length, String value) {
+    int start = offset, end = offset + length;
+    while (start < end && isPad(data[start])) start++;
+    while (end > start && isPad(data[end - 1])) end--;
+    if (end - start != value.length()) return false;
+    for (int i = start; i < end; i++) {
+      if (table[data[i] & 0xFF] != value.charAt(i - start)) return false;
+    }
+    return true;
+  }
+
+  private static boolean isPad(byte b) {
+    return b == BLANK || b == 0;
+  }
+}
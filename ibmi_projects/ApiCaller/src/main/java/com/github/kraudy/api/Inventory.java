@@ -0,0 +1,319 @@
+package com.github.kraudy.api;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.ibm.as400.access.AS400;
+
+/*
+ * Compile attributes of every program, service program and module of a set of libraries, one JSON object per line.
+ * The API calls are spread over a pool of host sessions, each with its own AS400 object (so its own job and QTEMP)
+ * and ApiSession. Lines are written as objects finish, not in list order, and at most a few objects per session
+ * are in flight, so memory does not grow with the size of the libraries.
+ * With an AttributeCache, objects not recreated since they were cached are written from it without any API call.
+ */
+public class Inventory implements AutoCloseable {
+  private static final int RECEIVER_LENGTH = 2048;
+  private static final int IN_FLIGHT_PER_SESSION = 4;
+
+  public static class Result {
+    public long objects;
+    public long errors;
+    public long cached; // Written from the cache
+    public long nanos;
+
+    public String summary() {
+      double minutes = nanos / 60e9;
+      return "Inventoried " + objects + " objects (" + cached + " cached, " + errors + " errors) in " + (nanos / 1_000_000) + " ms, " +
+             String.format("%.0f", minutes == 0 ? 0 : objects / minutes) + " objects/min";
+    }
+  }
+
+  // One described object: its line, and the creation timestamp the APIs returned (null if they failed)
+  static class Described {
+    final String key;
+    final String json;
+    final String created;
+
+    Described(String key, String json, String created) {
+      this.key = key;
+      this.json = json;
+      this.created = created;
+    }
+  }
+
+  private final List<ApiSession> sessions = new ArrayList<>();
+
+  public Inventory(AS400 system, int sessionCount) {
+    if (sessionCount < 1) throw new IllegalArgumentException("At least one session is needed");
+    for (int i = 0; i < sessionCount; i++) {
+      sessions.add(new ApiSession(new AS400(system)));
+    }
+  }
+
+  /* LIB, NAME, *TYPE, creation CYYMMDDHHMMSS of every *PGM, *SRVPGM and *MODULE of the libraries */
+  public static List<String[]> listObjects(Connection connection, List<String> libraries) throws SQLException {
+    List<String[]> objects = new ArrayList<>();
+    String query = "SELECT OBJNAME, OBJTYPE, OBJCREATED FROM TABLE(QSYS2.OBJECT_STATISTICS(?, '*PGM *SRVPGM *MODULE')) ORDER BY OBJTYPE, OBJNAME";
+    try (PreparedStatement stmt = connection.prepareStatement(query)) {
+      for (String library : libraries) {
+        stmt.setString(1, library);
+        try (ResultSet rs = stmt.executeQuery()) {
+          while (rs.next()) {
+            objects.add(new String[] { library, rs.getString("OBJNAME").trim(), rs.getString("OBJTYPE").trim(),
+                                       AttributeCache.creationStamp(rs.getTimestamp("OBJCREATED")) });
+          }
+        }
+      }
+    }
+    return objects;
+  }
+
+  /* cache can be null */
+  public Result run(List<String[]> objects, Writer out, AttributeCache cache) throws IOException, InterruptedException {
+    Result result = new Result();
+    long start = System.nanoTime();
+    BlockingQueue<ApiSession> idle = new ArrayBlockingQueue<>(sessions.size(), false, sessions);
+    ExecutorService executor = Executors.newFixedThreadPool(sessions.size());
+    CompletionService<Described> completion = new ExecutorCompletionService<>(executor);
+    int maxInFlight = sessions.size() * IN_FLIGHT_PER_SESSION;
+    int submitted = 0, running = 0;
+    try {
+      while (submitted < objects.size() || running > 0) {
+        while (submitted < objects.size() && running < maxInFlight) {
+          String[] obj = objects.get(submitted++);
+          String cached = cache == null ? null : cache.get(AttributeCache.key(obj[0], obj[1], obj[2]), obj[3]);
+          if (cached != null) { // Catalog timestamp unchanged: same compile attributes
+            result.objects++;
+            result.cached++;
+            out.write(cached);
+            out.write('\n');
+            continue;
+          }
+          completion.submit(() -> {
+            ApiSession api = idle.take();
+            try {
+              return describe(api, obj[0], obj[1], obj[2]);
+            } finally {
+              idle.put(api);
+            }
+          });
+          running++;
+        }
+        if (running == 0) break; // The rest came from the cache
+        Described described;
+        try {
+          described = completion.take().get();
+        } catch (ExecutionException e) {
+          throw new IllegalStateException("Inventory task failed", e.getCause()); // API errors are caught in describe
+        }
+        running--;
+        result.objects++;
+        if (described.created == null) {
+          result.errors++;
+        } else if (cache != null) {
+          cache.put(described.key, described.created, described.json);
+        }
+        out.write(described.json);
+        out.write('\n');
+      }
+      out.flush();
+    } finally {
+      executor.shutdownNow();
+    }
+    result.nanos = System.nanoTime() - start;
+    return result;
+  }
+
+  /* One NDJSON line. Failures are reported in the line, the inventory goes on */
+  static Described describe(ApiSession api, String library, String name, String type) {
+    String created = null;
+    StringBuilder json = new StringBuilder(256);
+    json.append("{\"library\":").append(quote(library))
+        .append(",\"name\":").append(quote(name))
+        .append(",\"type\":").append(quote(type));
+    try {
+      switch (type) {
+        case "*PGM":
+          created = program(api, library, name, json);
+          break;
+        case "*SRVPGM":
+          created = serviceProgram(api, library, name, json);
+          break;
+        case "*MODULE":
+          created = module(api, library, name, json);
+          break;
+        default:
+          throw new IllegalArgumentException("Not a program, service program or module");
+      }
+    } catch (Exception e) {
+      json.append(",\"error\":").append(quote(String.valueOf(e.getMessage())));
+      created = null; // Not cached: the next run tries again
+    }
+    return new Described(AttributeCache.key(library, name, type), json.append('}').toString(), created);
+  }
+
+  /* Each describer returns the creation timestamp of the object */
+  private static String program(ApiSession api, String library, String name, StringBuilder json) throws Exception {
+    RecordLayout.Record info = new RecordLayout.Record(api.decoder())
+        .wrap(api.receiver("QCLRPGMI", "PGMI0100", RECEIVER_LENGTH).run(name, library));
+    field(json, "attribute", info.text(RecordLayout.PGMI0100.ATTRIBUTE));
+    String created = info.text(RecordLayout.PGMI0100.CREATION_DATE_TIME);
+    field(json, "created", created);
+    field(json, "activationGroup", info.text(RecordLayout.PGMI0100.ACTIVATION_GROUP_ATTRIBUTE));
+    if (info.charAt(RecordLayout.PGMI0100.TYPE_OF_PROGRAM) != 'B') { // OPM: source is in the program, no DBGVIEW
+      field(json, "sourceFile", info.text(RecordLayout.PGMI0100.SOURCE_FILE));
+      field(json, "sourceLibrary", info.text(RecordLayout.PGMI0100.SOURCE_LIBRARY));
+      field(json, "sourceName", info.text(RecordLayout.PGMI0100.SOURCE_NAME));
+      field(json, "sourceUpdated", info.text(RecordLayout.PGMI0100.SOURCE_UPDATED_DATE_TIME));
+      return created;
+    }
+    // ILE: source and creation command of the module with the program entry procedure
+    boundModules(api, "QBNLPGMI", "PGML0110", library, name, info.text(RecordLayout.PGMI0100.ENTRY_MODULE),
+                 info.text(RecordLayout.PGMI0100.ENTRY_MODULE_LIBRARY), json);
+    return created;
+  }
+
+  private static String serviceProgram(ApiSession api, String library, String name, StringBuilder json) throws Exception {
+    RecordLayout.Record info = new RecordLayout.Record(api.decoder())
+        .wrap(api.receiver("QBNRSPGM", "SPGI0100", RECEIVER_LENGTH).run(name, library));
+    field(json, "attribute", info.text(RecordLayout.SPGI0100.ATTRIBUTE));
+    String created = info.text(RecordLayout.SPGI0100.CREATION_DATE_TIME);
+    field(json, "created", created);
+    field(json, "activationGroup", info.text(RecordLayout.SPGI0100.ACTIVATION_GROUP_ATTRIBUTE));
+    // No entry procedure: the module named like the service program, else the first one
+    boundModules(api, "QBNLSPGM", "SPGL0110", library, name, name, null, json); // Same entry layout as PGML0110
+    return created;
+  }
+
+  private static String module(ApiSession api, String library, String name, StringBuilder json) throws Exception {
+    RecordLayout.Record info = new RecordLayout.Record(api.decoder())
+        .wrap(api.receiver("QBNRMODI", "MODI0100", RECEIVER_LENGTH).run(name, library));
+    field(json, "attribute", info.text(RecordLayout.MODI0100.ATTRIBUTE));
+    String created = info.text(RecordLayout.MODI0100.CREATION_DATE_TIME);
+    field(json, "created", created);
+    field(json, "sourceFile", info.text(RecordLayout.MODI0100.SOURCE_FILE));
+    field(json, "sourceLibrary", info.text(RecordLayout.MODI0100.SOURCE_LIBRARY));
+    field(json, "sourceName", info.text(RecordLayout.MODI0100.SOURCE_NAME));
+    field(json, "sourceUpdated", info.text(RecordLayout.MODI0100.SOURCE_UPDATED_DATE_TIME));
+    // MODI0200: offset and length of the creation command at 8 and 12
+    byte[] data = api.receiver("QBNRMODI", "MODI0200", 4096).run(name, library);
+    int cmdOffset = ApiSession.BIN4.toInt(data, 8);
+    int cmdLength = ApiSession.BIN4.toInt(data, 12);
+    if (cmdLength > 0 && cmdOffset + cmdLength <= data.length) {
+      field(json, "dbgView", dbgView(api.decoder().decode(data, cmdOffset, cmdLength)));
+    }
+    return created;
+  }
+
+  // Module count, then source and DBGVIEW of one bound module, all from a single list call
+  private static void boundModules(ApiSession api, String listApi, String format, String library, String name,
+                                   String module, String moduleLibrary, StringBuilder json) throws Exception {
+    UserSpacePool.ListSpace space = api.userSpaces().acquire();
+    try {
+      api.userSpace(listApi, format, space.name(), space.library()).run(name, library);
+      space.readHeader();
+      json.append(",\"modules\":").append(space.entryCount());
+      boundModule(space, space.listOffset(), api.decoder(), module, moduleLibrary, json);
+    } finally {
+      api.userSpaces().release(space);
+    }
+  }
+
+  /*
+   * Writes the source and DBGVIEW of module (in moduleLibrary, any library if null) from a PGML0110/SPGL0110 list,
+   * and stops reading the list there. Without moduleLibrary the first module stands in if none has that name.
+   * listOffset is where the list starts in the space: the creation data offsets are from the start of the space.
+   */
+  static void boundModule(ListEntries.Source list, int listOffset, EbcdicDecoder decoder, String module,
+                          String moduleLibrary, StringBuilder json) throws Exception {
+    String first = null;
+    ListEntries entries = new ListEntries(list, decoder);
+    while (entries.hasNext()) {
+      RecordLayout.Record entry = entries.next();
+      if (entry.is(RecordLayout.PGML0110.MODULE_NAME, module) &&
+          (moduleLibrary == null || entry.is(RecordLayout.PGML0110.MODULE_LIBRARY, moduleLibrary))) {
+        json.append(moduleFields(list, listOffset, decoder, entry));
+        return;
+      }
+      if (first == null && moduleLibrary == null) first = moduleFields(list, listOffset, decoder, entry);
+    }
+    if (first != null) json.append(first);
+  }
+
+  private static String moduleFields(ListEntries.Source list, int listOffset, EbcdicDecoder decoder,
+                                     RecordLayout.Record entry) throws Exception {
+    StringBuilder json = new StringBuilder(160);
+    field(json, "module", entry.text(RecordLayout.PGML0110.MODULE_LIBRARY) + "/" + entry.text(RecordLayout.PGML0110.MODULE_NAME));
+    field(json, "sourceFile", entry.text(RecordLayout.PGML0110.SOURCE_FILE));
+    field(json, "sourceLibrary", entry.text(RecordLayout.PGML0110.SOURCE_LIBRARY));
+    field(json, "sourceName", entry.text(RecordLayout.PGML0110.SOURCE_NAME));
+    field(json, "sourceUpdated", entry.text(RecordLayout.PGML0110.SOURCE_UPDATED_DATE_TIME));
+    field(json, "dbgView", dbgView(list, listOffset, decoder, entry));
+    return json.toString();
+  }
+
+  /* DBGVIEW of a PGML0110/SPGL0110 entry, read from its creation data further down the list */
+  static String dbgView(ListEntries.Source list, int listOffset, EbcdicDecoder decoder, RecordLayout.Record entry) throws Exception {
+    int cmdOffset = entry.bin4(RecordLayout.PGML0110.CREATION_DATA_OFFSET) - listOffset;
+    int cmdLength = entry.bin4(RecordLayout.PGML0110.CREATION_DATA_LENGTH);
+    if (cmdLength <= 0 || cmdOffset < 0 || cmdOffset + cmdLength > list.listSize()) return ApiCaller.ValCmd.NONE.toString();
+    byte[] data = new byte[cmdLength];
+    list.read(data, cmdOffset, cmdLength);
+    return dbgView(decoder.decode(data, 0, cmdLength));
+  }
+
+  /* DBGVIEW value of a creation command, *NONE if it has none */
+  static String dbgView(String command) {
+    command = command.toUpperCase();
+    int dbgIndex = command.indexOf("DBGVIEW(");
+    if (dbgIndex == -1) return ApiCaller.ValCmd.NONE.toString();
+    int start = dbgIndex + "DBGVIEW(".length();
+    int end = command.indexOf(")", start);
+    if (end == -1) return ApiCaller.ValCmd.NONE.toString();
+    return "*" + command.substring(start, end).trim().replace("'", "").replace("*", "");
+  }
+
+  private static void field(StringBuilder json, String name, String value) {
+    json.append(",\"").append(name).append("\":").append(quote(value));
+  }
+
+  static String quote(String value) {
+    StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"': quoted.append("\\\""); break;
+        case '\\': quoted.append("\\\\"); break;
+        case '\n': quoted.append("\\n"); break;
+        case '\r': quoted.append("\\r"); break;
+        case '\t': quoted.append("\\t"); break;
+        default:
+          if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+          else quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  @Override
+  public void close() {
+    for (ApiSession api : sessions) {
+      api.close();
+      api.system().disconnectAllServices();
+    }
+  }
+}
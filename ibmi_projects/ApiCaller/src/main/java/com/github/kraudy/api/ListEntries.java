@@ -0,0 +1,84 @@
+package com.github.kraudy.api;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * Entries of the list an API left in a user space, read a chunk at a time as the iteration gets to them.
+ * Fixed size entries (PGML0100) and entries that start with their own size (PGML0110, entry size 0 in the header)
+ * are both handled. Memory is one window of CHUNK bytes, or of the biggest entry if that is larger,
+ * whatever the length of the list; stopping early leaves the rest of the list unread.
+ * next() returns the same Record every time, moved to the next entry: read what is needed before calling it again.
+ */
+public class ListEntries implements Iterator<RecordLayout.Record> {
+  static final int CHUNK = 16 * 1024;
+
+  /* What the entries are read from: a user space of the pool, or bytes in memory in the tests */
+  interface Source {
+    String name();
+    int entryCount();
+    int entrySize(); // 0 if variable
+    int listSize();
+    /* length bytes of the list section starting at position, into buffer from index 0 */
+    void read(byte[] buffer, int position, int length) throws Exception;
+  }
+
+  private final Source space;
+  private final RecordLayout.Record record;
+  private final int count;
+  private final int fixedSize; // 0 for variable size entries
+  private final int listSize;
+  private int index;
+  private int position; // Of the next entry, from the start of the list section
+  private byte[] window = new byte[CHUNK];
+  private int windowStart;
+  private int windowLength;
+
+  /* The header of the space must have been read */
+  ListEntries(Source space, EbcdicDecoder decoder) {
+    this.space = space;
+    this.record = new RecordLayout.Record(decoder);
+    this.count = space.entryCount();
+    this.fixedSize = space.entrySize();
+    this.listSize = space.listSize();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return index < count;
+  }
+
+  @Override
+  public RecordLayout.Record next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    try {
+      int size = fixedSize;
+      if (size == 0) {
+        cover(position, 4);
+        size = ApiSession.BIN4.toInt(window, position - windowStart);
+        if (size < 4) throw new IllegalStateException("Bad entry size " + size + " at list position " + position);
+      }
+      cover(position, size);
+      record.wrap(window, position - windowStart);
+      position += size;
+      index++;
+      return record;
+    } catch (IllegalStateException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException("Could not read list entry " + index + " from user space " + space.name(), e);
+    }
+  }
+
+  // Moves the window so that [from, from + length) of the list is in it
+  private void cover(int from, int length) throws Exception {
+    if (from >= windowStart && from + length <= windowStart + windowLength) return;
+    if (from + length > listSize) {
+      throw new IllegalStateException("List entry at position " + from + " runs past the list size " + listSize);
+    }
+    if (length > window.length) window = new byte[length];
+    windowStart = from;
+    windowLength = Math.min(window.length, listSize - from);
+    space.read(window, from, windowLength);
+  }
+}
@@ -0,0 +1,238 @@
+package com.github.kraudy.api;
+
+/*
+ * Receiver formats of the retrieve APIs, declared as offset, length and kind per field.
+ * Record is a flyweight over the receiver bytes: nothing is decoded until a field is read,
+ * and only that field is. Wrap the next receiver into the same Record to read it.
+ */
+public final class RecordLayout {
+
+  public enum Kind { TEXT, BIN4 }
+
+  public interface Field {
+    int offset();
+    int length();
+    Kind kind();
+    String name();
+  }
+
+  /* QCLRPGMI program information */
+  public enum PGMI0100 implements Field {
+    BYTES_RETURNED(0, 4, Kind.BIN4),
+    BYTES_AVAILABLE(4, 4, Kind.BIN4),
+    PROGRAM_NAME(8, 10, Kind.TEXT),
+    PROGRAM_LIBRARY(18, 10, Kind.TEXT),
+    OWNER(28, 10, Kind.TEXT),
+    ATTRIBUTE(38, 10, Kind.TEXT),
+    CREATION_DATE_TIME(48, 13, Kind.TEXT),
+    SOURCE_FILE(61, 10, Kind.TEXT),
+    SOURCE_LIBRARY(71, 10, Kind.TEXT),
+    SOURCE_NAME(81, 10, Kind.TEXT),
+    SOURCE_UPDATED_DATE_TIME(91, 13, Kind.TEXT),
+    OBSERVABLE(104, 1, Kind.TEXT),
+    USER_PROFILE_OPTION(105, 1, Kind.TEXT),
+    USE_ADOPTED_AUTHORITY(106, 1, Kind.TEXT),
+    LOG_COMMANDS(107, 1, Kind.TEXT),
+    ALLOW_RTVCLSRC(108, 1, Kind.TEXT),
+    FIX_DECIMAL_DATA(109, 1, Kind.TEXT),
+    TEXT_DESCRIPTION(110, 50, Kind.TEXT),
+    TYPE_OF_PROGRAM(160, 1, Kind.TEXT), // B for ILE
+    TERASPACE_ENABLED(161, 1, Kind.TEXT),
+    MIN_PARAMETERS(220, 4, Kind.BIN4), // After 58 reserved bytes
+    MAX_PARAMETERS(224, 4, Kind.BIN4),
+    ENTRY_MODULE(348, 10, Kind.TEXT), // ILE: module of the program entry procedure
+    ENTRY_MODULE_LIBRARY(358, 10, Kind.TEXT),
+    ACTIVATION_GROUP_ATTRIBUTE(368, 30, Kind.TEXT);
+
+    private final int offset, length;
+    private final Kind kind;
+
+    PGMI0100(int offset, int length, Kind kind) {
+      this.offset = offset;
+      this.length = length;
+      this.kind = kind;
+    }
+
+    public int offset() { return offset; }
+    public int length() { return length; }
+    public Kind kind() { return kind; }
+  }
+
+  /* QBNRSPGM service program information */
+  public enum SPGI0100 implements Field {
+    BYTES_RETURNED(0, 4, Kind.BIN4),
+    BYTES_AVAILABLE(4, 4, Kind.BIN4),
+    PROGRAM_NAME(8, 10, Kind.TEXT),
+    PROGRAM_LIBRARY(18, 10, Kind.TEXT),
+    OWNER(28, 10, Kind.TEXT),
+    ATTRIBUTE(38, 10, Kind.TEXT),
+    CREATION_DATE_TIME(48, 13, Kind.TEXT),
+    EXPORT_SOURCE_FILE(61, 10, Kind.TEXT),
+    EXPORT_SOURCE_LIBRARY(71, 10, Kind.TEXT),
+    EXPORT_SOURCE_MEMBER(81, 10, Kind.TEXT),
+    ACTIVATION_GROUP_ATTRIBUTE(91, 30, Kind.TEXT),
+    CURRENT_EXPORT_SIGNATURE(121, 16, Kind.TEXT);
+
+    private final int offset, length;
+    private final Kind kind;
+
+    SPGI0100(int offset, int length, Kind kind) {
+      this.offset = offset;
+      this.length = length;
+      this.kind = kind;
+    }
+
+    public int offset() { return offset; }
+    public int length() { return length; }
+    public Kind kind() { return kind; }
+  }
+
+  /* QBNRMODI module information. Modules have no owner or activation group */
+  public enum MODI0100 implements Field {
+    BYTES_RETURNED(0, 4, Kind.BIN4),
+    BYTES_AVAILABLE(4, 4, Kind.BIN4),
+    MODULE_NAME(8, 10, Kind.TEXT),
+    MODULE_LIBRARY(18, 10, Kind.TEXT),
+    ATTRIBUTE(28, 10, Kind.TEXT),
+    CREATION_DATE_TIME(38, 13, Kind.TEXT),
+    SOURCE_FILE(51, 10, Kind.TEXT),
+    SOURCE_LIBRARY(61, 10, Kind.TEXT),
+    SOURCE_NAME(71, 10, Kind.TEXT),
+    SOURCE_UPDATED_DATE_TIME(81, 13, Kind.TEXT),
+    TEXT_DESCRIPTION(94, 50, Kind.TEXT);
+
+    private final int offset, length;
+    private final Kind kind;
+
+    MODI0100(int offset, int length, Kind kind) {
+      this.offset = offset;
+      this.length = length;
+      this.kind = kind;
+    }
+
+    public int offset() { return offset; }
+    public int length() { return length; }
+    public Kind kind() { return kind; }
+  }
+
+  /* QBNLPGMI list entry, one per bound module, fixed size */
+  public enum PGML0100 implements Field {
+    PROGRAM_NAME(0, 10, Kind.TEXT),
+    PROGRAM_LIBRARY(10, 10, Kind.TEXT),
+    MODULE_NAME(20, 10, Kind.TEXT),
+    MODULE_LIBRARY(30, 10, Kind.TEXT),
+    SOURCE_FILE(40, 10, Kind.TEXT),
+    SOURCE_LIBRARY(50, 10, Kind.TEXT),
+    SOURCE_NAME(60, 10, Kind.TEXT),
+    MODULE_ATTRIBUTE(70, 10, Kind.TEXT),
+    CREATION_DATE_TIME(80, 13, Kind.TEXT),
+    SOURCE_UPDATED_DATE_TIME(93, 13, Kind.TEXT);
+
+    private final int offset, length;
+    private final Kind kind;
+
+    PGML0100(int offset, int length, Kind kind) {
+      this.offset = offset;
+      this.length = length;
+      this.kind = kind;
+    }
+
+    public int offset() { return offset; }
+    public int length() { return length; }
+    public Kind kind() { return kind; }
+  }
+
+  /*
+   * QBNLPGMI list entry with the module creation data, variable size: every entry starts with its own size.
+   * QBNLSPGM SPGL0110 entries have the same layout
+   */
+  public enum PGML0110 implements Field {
+    ENTRY_SIZE(0, 4, Kind.BIN4),
+    PROGRAM_NAME(4, 10, Kind.TEXT),
+    PROGRAM_LIBRARY(14, 10, Kind.TEXT),
+    MODULE_NAME(24, 10, Kind.TEXT),
+    MODULE_LIBRARY(34, 10, Kind.TEXT),
+    SOURCE_FILE(44, 10, Kind.TEXT),
+    SOURCE_LIBRARY(54, 10, Kind.TEXT),
+    SOURCE_NAME(64, 10, Kind.TEXT),
+    MODULE_ATTRIBUTE(74, 10, Kind.TEXT),
+    CREATION_DATE_TIME(84, 13, Kind.TEXT),
+    SOURCE_UPDATED_DATE_TIME(97, 13, Kind.TEXT),
+    CREATION_DATA_OFFSET(346, 4, Kind.BIN4), // From the start of the user space
+    CREATION_DATA_LENGTH(350, 4, Kind.BIN4);
+
+    private final int offset, length;
+    private final Kind kind;
+
+    PGML0110(int offset, int length, Kind kind) {
+      this.offset = offset;
+      this.length = length;
+      this.kind = kind;
+    }
+
+    public int offset() { return offset; }
+    public int length() { return length; }
+    public Kind kind() { return kind; }
+  }
+
+  /* Format name -> its fields, for code that only knows the format */
+  public static Field[] fields(String format) {
+    switch (format) {
+      case "PGMI0100": return PGMI0100.values();
+      case "SPGI0100": return SPGI0100.values();
+      case "MODI0100": return MODI0100.values();
+      case "PGML0100": return PGML0100.values();
+      case "PGML0110":
+      case "SPGL0110": return PGML0110.values();
+      default: throw new IllegalArgumentException("No record layout for format " + format);
+    }
+  }
+
+  public static final class Record {
+    private final EbcdicDecoder decoder;
+    private byte[] data;
+    private int base;
+
+    public Record(EbcdicDecoder decoder) {
+      this.decoder = decoder;
+    }
+
+    public Record wrap(byte[] data) {
+      return wrap(data, 0);
+    }
+
+    /* Record starting at base, e.g. one entry of a list */
+    public Record wrap(byte[] data, int base) {
+      this.data = data;
+      this.base = base;
+      return this;
+    }
+
+    /* False if the field lies past what the API returned. Receivers only: their first field is bytes returned */
+    public boolean has(Field field) {
+      int returned = data.length < 4 ? 0 : Math.min(data.length, ApiSession.BIN4.toInt(data, base));
+      return field.offset() + field.length() <= returned;
+    }
+
+    public String text(Field field) {
+      return decoder.decode(data, base + field.offset(), field.length());
+    }
+
+    public char charAt(Field field) {
+      return decoder.charAt(data, base + field.offset());
+    }
+
+    public boolean is(Field field, String value) {
+      return decoder.equals(data, base + field.offset(), field.length(), value);
+    }
+
+    public int bin4(Field field) {
+      return ApiSession.BIN4.toInt(data, base + field.offset());
+    }
+
+    /* Boxed value of any field, for printing */
+    public Object value(Field field) {
+      return field.kind() == Kind.BIN4 ? (Object) bin4(field) : text(field);
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.github.kraudy.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import com.ibm.as400.access.UserSpace;
+
+/*
+ * QTEMP user spaces for the list APIs of one session, created on first use and kept until close() instead of
+ * created and deleted around every call. Spaces are auto extendible, so a list API never stops for lack of room.
+ * Only the generic header and the list section are read, the entries through ListEntries a chunk at a time.
+ */
+public class UserSpacePool implements AutoCloseable {
+  private static final String LIBRARY = "QTEMP";
+  private static final int INITIAL_SIZE = 64 * 1024;
+
+  private final ApiSession api;
+  private final Deque<ListSpace> free = new ArrayDeque<>();
+  private final List<ListSpace> all = new ArrayList<>();
+
+  public UserSpacePool(ApiSession api) {
+    this.api = api;
+  }
+
+  public ListSpace acquire() throws Exception {
+    ListSpace space = free.poll();
+    if (space != null) return space;
+    space = new ListSpace(String.format("APILST%04d", all.size() + 1));
+    all.add(space);
+    return space;
+  }
+
+  public void release(ListSpace space) {
+    free.push(space);
+  }
+
+  /* Deletes every space of the pool, QTEMP would only drop them at the end of the job */
+  @Override
+  public void close() {
+    for (ListSpace space : all) {
+      try {
+        space.space.delete();
+      } catch (Exception e) {
+        // Gone with QTEMP anyway
+      }
+    }
+    all.clear();
+    free.clear();
+  }
+
+  /*
+   * One user space and what was last listed into it. Generic header offsets (list APIs, format 0100):
+   *   103 information status (C complete, P partial, I incomplete)
+   *   124 offset to list data, 128 size of list data, 132 number of entries, 136 size of each entry (0 if variable)
+   */
+  public class ListSpace implements ListEntries.Source {
+    private static final int HEADER_LENGTH = 140;
+
+    private final String name;
+    private final UserSpace space;
+    private final byte[] header = new byte[HEADER_LENGTH];
+
+    private ListSpace(String name) throws Exception {
+      this.name = name;
+      this.space = new UserSpace(api.system(), "/QSYS.LIB/" + LIBRARY + ".LIB/" + name + ".USRSPC");
+      space.setMustUseProgramCall(true); // Same job as the API for QTEMP
+      space.setMustUseSockets(true);
+      space.create(INITIAL_SIZE, true, " ", (byte) 0x00, "List API user space", "*USE");
+      space.setAutoExtendible(true);
+    }
+
+    @Override
+    public String name() {
+      return name;
+    }
+
+    public String library() {
+      return LIBRARY;
+    }
+
+    /* Reads the generic header of the list the last API call left in the space */
+    public ListSpace readHeader() throws Exception {
+      space.read(header, 0, 0, HEADER_LENGTH);
+      if (status() == 'I') {
+        throw new Exception("List in user space " + LIBRARY + "/" + name + " is incomplete");
+      }
+      return this;
+    }
+
+    public char status() {
+      return api.decoder().charAt(header, 103);
+    }
+
+    public int listOffset() {
+      return ApiSession.BIN4.toInt(header, 124);
+    }
+
+    @Override
+    public int listSize() {
+      return ApiSession.BIN4.toInt(header, 128);
+    }
+
+    @Override
+    public int entryCount() {
+      return ApiSession.BIN4.toInt(header, 132);
+    }
+
+    @Override
+    public int entrySize() {
+      return ApiSession.BIN4.toInt(header, 136);
+    }
+
+    /* Entries of the listed data, the header must have been read */
+    public ListEntries entries() {
+      return new ListEntries(this, api.decoder());
+    }
+
+    @Override
+    public void read(byte[] buffer, int position, int length) throws Exception {
+      if (length > 0) space.read(buffer, listOffset() + position, 0, length);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.github.kraudy.api;
+
+import com.ibm.as400.access.AS400;
+import com.ibm.as400.access.AS400Bin4;
+import com.ibm.as400.access.AS400Message;
+import com.ibm.as400.access.AS400Text;
+import com.ibm.as400.access.ProgramCall;
+import com.ibm.as400.access.ProgramParameter;
+
+import io.github.theprez.dotenv_ibmi.IBMiDotEnv;
+
+/*
+ * Calls/sec of a retrieve API (QCLRPGMI PGMI0100 by default) built from scratch on every call, like ApiCaller used to,
+ * against the same call through an ApiSession template. Needs a system (.env, see IBMiDotEnv):
+ *   run this class' main with target/test-classes, target/classes and the test classpath (mvn dependency:build-classpath)
+ *   args: LIB OBJ [API FORMAT] [calls]
+ */
+public class ApiCallBenchmark {
+
+  public static void main(String... args) throws Exception {
+    if (args.length < 2) {
+      System.out.println("Usage: ApiCallBenchmark LIB OBJ [API FORMAT] [calls]");
+      return;
+    }
+    String library = args[0].toUpperCase();
+    String object = args[1].toUpperCase();
+    String api = args.length > 3 ? args[2].toUpperCase() : "QCLRPGMI";
+    String format = args.length > 3 ? args[3].toUpperCase() : "PGMI0100";
+    int calls = args.length == 3 ? Integer.parseInt(args[2]) : args.length > 4 ? Integer.parseInt(args[4]) : 2000;
+
+    AS400 system = IBMiDotEnv.getNewSystemConnection(true);
+    try {
+      ApiSession session = new ApiSession(system);
+      ApiSession.ApiCall template = session.receiver(api, format, 2048);
+      // Warm up both paths: connection, converter tables, JIT
+      for (int i = 0; i < Math.min(200, calls); i++) {
+        fresh(system, api, format, object, library);
+        template.run(object, library);
+      }
+
+      long start = System.nanoTime();
+      for (int i = 0; i < calls; i++) fresh(system, api, format, object, library);
+      long freshNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < calls; i++) template.run(object, library);
+      long templateNanos = System.nanoTime() - start;
+
+      System.out.println(String.format("%-10s %10s %12s", "Path", "Calls/sec", "us/call"));
+      print("fresh", calls, freshNanos);
+      print("template", calls, templateNanos);
+    } finally {
+      system.disconnectAllServices();
+    }
+  }
+
+  private static void print(String path, int calls, long nanos) {
+    System.out.println(String.format("%-10s %10.0f %12.1f", path, calls * 1e9 / nanos, nanos / 1000.0 / calls));
+  }
+
+  // What every call did before ApiSession: new ProgramCall, parameters and converters
+  private static byte[] fresh(AS400 system, String api, String format, String object, String library) throws Exception {
+    ProgramCall pc = new ProgramCall(system);
+    pc.setProgram("/QSYS.LIB/" + api + ".PGM");
+    int recvLen = 2048;
+    ProgramParameter[] parms = new ProgramParameter[5];
+    parms[0] = new ProgramParameter(recvLen);
+    parms[1] = new ProgramParameter(new AS400Bin4().toBytes(recvLen));
+    parms[2] = new ProgramParameter(new AS400Text(8, system).toBytes(format));
+    String qualName = String.format("%-10s%-10s", object, library);
+    parms[3] = new ProgramParameter(new AS400Text(20, system).toBytes(qualName));
+    byte[] errorCode = new byte[16];
+    new AS400Bin4().toBytes(0, errorCode, 0);
+    parms[4] = new ProgramParameter(errorCode);
+    pc.setParameterList(parms);
+    if (!pc.run()) {
+      AS400Message[] msgs = pc.getMessageList();
+      throw new Exception(api + " API call failed: " + (msgs.length > 0 ? msgs[0].getText() : "Unknown error"));
+    }
+    return parms[0].getOutputData();
+  }
+}
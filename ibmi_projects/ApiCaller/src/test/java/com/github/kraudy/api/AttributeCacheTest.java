@@ -0,0 +1,131 @@
+package com.github.kraudy.api;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+public class AttributeCacheTest {
+  private static final String PGM1 = AttributeCache.key("LIBA", "PGM1", "*PGM");
+  private static final String PGM2 = AttributeCache.key("LIBA", "PGM2", "*PGM");
+  private static final String PGM3 = AttributeCache.key("LIBA", "PGM3", "*PGM");
+
+  private static File write(String... lines) throws IOException {
+    File file = File.createTempFile("attributes", ".cache");
+    Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    return file;
+  }
+
+  @Test
+  void saveAndLoadRoundTrip() throws Exception {
+    File file = write("left over from an older run");
+    File temp = new File(file.getPath() + ".tmp");
+    try {
+      AttributeCache cache = new AttributeCache(10);
+      cache.put(PGM1, "1240102030405", "{\"object\":\"LIBA/PGM1\"}");
+      cache.put(PGM2, "1240102030406", "{\"object\":\"LIBA/PGM2\",\"text\":\"tab\\there\"}");
+      cache.get(PGM1, "1240102030405"); // PGM2 is now the least recently used
+      cache.save(file);
+
+      assertFalse(temp.exists());
+      List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+      assertEquals(AttributeCache.HEADER, lines.get(0));
+      assertEquals(PGM2 + "\t1240102030406\t{\"object\":\"LIBA/PGM2\",\"text\":\"tab\\there\"}", lines.get(1));
+      assertEquals(PGM1 + "\t1240102030405\t{\"object\":\"LIBA/PGM1\"}", lines.get(2));
+
+      AttributeCache loaded = AttributeCache.load(file, 10);
+      assertEquals(2, loaded.size());
+      assertEquals("{\"object\":\"LIBA/PGM1\"}", loaded.get(PGM1, "1240102030405"));
+      assertEquals("{\"object\":\"LIBA/PGM2\",\"text\":\"tab\\there\"}", loaded.get(PGM2, "1240102030406"));
+    } finally {
+      Files.deleteIfExists(file.toPath());
+      Files.deleteIfExists(temp.toPath());
+    }
+  }
+
+  @Test
+  void missingFileIsAnEmptyCache() throws Exception {
+    File file = File.createTempFile("attributes", ".cache");
+    Files.delete(file.toPath());
+    assertEquals(0, AttributeCache.load(file, 10).size());
+  }
+
+  @Test
+  void rejectsAFileWithoutTheHeader() throws Exception {
+    File file = write("# Some other file", PGM1 + "\t1240102030405\t{}");
+    try {
+      IOException e = assertThrows(IOException.class, () -> AttributeCache.load(file, 10));
+      assertTrue(e.getMessage().startsWith("Not an attribute cache"));
+    } finally {
+      Files.delete(file.toPath());
+    }
+  }
+
+  @Test
+  void rejectsAMalformedLine() throws Exception {
+    File file = write(AttributeCache.HEADER, PGM1 + "\t1240102030405\t{}", PGM2 + "\t{}");
+    try {
+      IOException e = assertThrows(IOException.class, () -> AttributeCache.load(file, 10));
+      assertEquals("Malformed cache line: " + PGM2 + "\t{}", e.getMessage());
+    } finally {
+      Files.delete(file.toPath());
+    }
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedPastMaxEntries() {
+    AttributeCache cache = new AttributeCache(2);
+    cache.put(PGM1, "1240102030405", "{}");
+    cache.put(PGM2, "1240102030405", "{}");
+    cache.get(PGM1, "1240102030405");
+    cache.put(PGM3, "1240102030405", "{}");
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get(PGM2, "1240102030405"));
+    assertEquals("{}", cache.get(PGM1, "1240102030405"));
+    assertEquals("{}", cache.get(PGM3, "1240102030405"));
+  }
+
+  @Test
+  void recreatedObjectIsAMiss() {
+    AttributeCache cache = new AttributeCache(10);
+    cache.put(PGM1, "1240102030405", "{}");
+
+    assertNull(cache.get(PGM1, "1240203040506"));
+    assertNull(cache.get(PGM2, "1240102030405"));
+    assertEquals("{}", cache.get(PGM1, "1240102030405"));
+    assertEquals(1, cache.hits());
+    assertEquals(2, cache.misses());
+  }
+
+  @Test
+  void onlyCachesLinesWithAStampAndNoNewline() {
+    AttributeCache cache = new AttributeCache(10);
+    cache.put(PGM1, "", "{}");
+    cache.put(PGM2, "1240102030405", "{\n}");
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void creationStampHasTheCenturyDigitOfTheApis() {
+    assertEquals("0991231235958", AttributeCache.creationStamp(Timestamp.valueOf("1999-12-31 23:59:58")));
+    assertEquals("1240102030405", AttributeCache.creationStamp(Timestamp.valueOf("2024-01-02 03:04:05")));
+    assertEquals("", AttributeCache.creationStamp(null));
+  }
+
+  @Test
+  void sizeBelowOneIsRejected() {
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new AttributeCache(0));
+    assertEquals("Attribute cache size must be at least 1", e.getMessage());
+  }
+}
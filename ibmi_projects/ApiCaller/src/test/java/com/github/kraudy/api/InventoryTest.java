@@ -0,0 +1,99 @@
+package com.github.kraudy.api;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+public class InventoryTest {
+
+  @Test
+  void quoteEscapesWhatJsonNeeds() {
+    assertEquals("\"PGM1\"", Inventory.quote("PGM1"));
+    assertEquals("\"\"", Inventory.quote(""));
+    assertEquals("\"say \\\"hi\\\"\"", Inventory.quote("say \"hi\""));
+    assertEquals("\"C:\\\\src\"", Inventory.quote("C:\\src"));
+    assertEquals("\"a\\nb\\rc\\td\"", Inventory.quote("a\nb\rc\td"));
+    assertEquals("\"\\u0000\\u001f\"", Inventory.quote("\u0000\u001f"));
+    assertEquals("\"\u00e9\"", Inventory.quote("\u00e9")); // Only control characters are escaped
+  }
+
+  @Test
+  void dbgViewIsReadFromTheCompileCommand() {
+    assertEquals("*ALL", Inventory.dbgView("CRTBNDRPG PGM(LIBA/PGM1) DBGVIEW(*ALL)"));
+    assertEquals("*SOURCE", Inventory.dbgView("crtsqlrpgi obj(liba/pgm1) dbgview( *source ) option(*eventf)"));
+    assertEquals("*LIST", Inventory.dbgView("CRTRPGMOD MODULE(LIBA/MOD1) DBGVIEW('*LIST')"));
+    assertEquals("*NONE", Inventory.dbgView("CRTBNDCL PGM(LIBA/PGM1)"));
+    assertEquals("*NONE", Inventory.dbgView("CRTBNDCL PGM(LIBA/PGM1) DBGVIEW(*ALL"));
+  }
+
+  private static final int LIST_OFFSET = 192; // Creation data offsets count from the start of the space
+
+  // PGML0110 list of "LIB/MODULE/creation command" entries, each command at the end of its own entry
+  private static ListEntriesTest.Space modules(String... modules) {
+    int[] sizes = new int[modules.length];
+    for (int i = 0; i < modules.length; i++) sizes[i] = 354 + modules[i].split("/", 3)[2].length();
+    byte[] list = new byte[Arrays.stream(sizes).sum()];
+    Arrays.fill(list, (byte) 0x40);
+    int position = 0;
+    for (int i = 0; i < modules.length; i++) {
+      String[] module = modules[i].split("/", 3);
+      RecordLayoutTest.bin4(list, position, sizes[i]);
+      RecordLayoutTest.text(list, position + 4, 10, "PGM1");
+      RecordLayoutTest.text(list, position + 14, 10, "LIBA");
+      RecordLayoutTest.text(list, position + 24, 10, module[1]);
+      RecordLayoutTest.text(list, position + 34, 10, module[0]);
+      RecordLayoutTest.text(list, position + 44, 10, "QRPGLESRC");
+      RecordLayoutTest.text(list, position + 54, 10, "SRC" + module[0]);
+      RecordLayoutTest.text(list, position + 64, 10, module[1]);
+      RecordLayoutTest.text(list, position + 97, 13, "1240102030405");
+      RecordLayoutTest.bin4(list, position + 346, module[2].isEmpty() ? 0 : LIST_OFFSET + position + 354);
+      RecordLayoutTest.bin4(list, position + 350, module[2].length());
+      if (!module[2].isEmpty()) RecordLayoutTest.text(list, position + 354, module[2].length(), module[2]);
+      position += sizes[i];
+    }
+    return new ListEntriesTest.Space(list, modules.length, 0);
+  }
+
+  private static String boundModule(ListEntriesTest.Space list, String module, String moduleLibrary) throws Exception {
+    StringBuilder json = new StringBuilder();
+    Inventory.boundModule(list, LIST_OFFSET, EbcdicDecoder.CCSID_37, module, moduleLibrary, json);
+    return json.toString();
+  }
+
+  private static String fields(String module, String dbgView) {
+    String[] name = module.split("/");
+    return ",\"module\":\"" + module + "\",\"sourceFile\":\"QRPGLESRC\",\"sourceLibrary\":\"SRC" + name[0] +
+           "\",\"sourceName\":\"" + name[1] + "\",\"sourceUpdated\":\"1240102030405\",\"dbgView\":\"" + dbgView + "\"";
+  }
+
+  @Test
+  void programReportsItsEntryModule() throws Exception {
+    ListEntriesTest.Space list = modules("LIBA/UTIL/CRTRPGMOD MODULE(LIBA/UTIL) DBGVIEW(*ALL)",
+                                         "LIBB/MAIN/CRTRPGMOD MODULE(LIBB/MAIN) DBGVIEW(*LIST)",
+                                         "LIBC/MAIN/CRTRPGMOD MODULE(LIBC/MAIN) DBGVIEW(*SOURCE)",
+                                         "LIBC/LAST/");
+    assertEquals(fields("LIBC/MAIN", "*SOURCE"), boundModule(list, "MAIN", "LIBC"));
+    assertEquals(fields("LIBC/LAST", "*NONE"), boundModule(list, "LAST", "LIBC")); // No creation data
+    assertEquals("", boundModule(list, "NOPE", "LIBA")); // Never another module in its place
+  }
+
+  @Test
+  void scanStopsAtTheEntryModule() throws Exception {
+    String[] modules = new String[200];
+    for (int i = 0; i < modules.length; i++) modules[i] = "LIBA/MOD" + i + "/CRTRPGMOD MODULE(LIBA/MOD" + i + ")";
+    ListEntriesTest.Space list = modules(modules);
+    assertEquals(fields("LIBA/MOD1", "*NONE"), boundModule(list, "MOD1", "LIBA"));
+    int read = list.reads.stream().mapToInt(r -> r[0] + r[1]).max().getAsInt();
+    assertTrue(read < list.listSize(), "Read up to " + read + " of " + list.listSize());
+  }
+
+  @Test
+  void serviceProgramReportsTheModuleOfItsNameElseTheFirst() throws Exception {
+    ListEntriesTest.Space list = modules("LIBA/UTIL/CRTRPGMOD MODULE(LIBA/UTIL) DBGVIEW(*ALL)",
+                                         "LIBA/SRV1/CRTSQLRPGI OBJ(LIBA/SRV1) DBGVIEW(*SOURCE)");
+    assertEquals(fields("LIBA/SRV1", "*SOURCE"), boundModule(list, "SRV1", null));
+    assertEquals(fields("LIBA/UTIL", "*ALL"), boundModule(list, "SRV2", null));
+  }
+}
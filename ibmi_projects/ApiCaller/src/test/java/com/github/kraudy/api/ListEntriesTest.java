@@ -0,0 +1,155 @@
+package com.github.kraudy.api;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ListEntriesTest {
+
+  // List section in memory, remembers every read the iterator asked for
+  static class Space implements ListEntries.Source {
+    final byte[] list;
+    final int count, entrySize;
+    final List<int[]> reads = new ArrayList<>(); // position, length
+
+    Space(byte[] list, int count, int entrySize) {
+      this.list = list;
+      this.count = count;
+      this.entrySize = entrySize;
+    }
+
+    public String name() { return "APILST0001"; }
+    public int entryCount() { return count; }
+    public int entrySize() { return entrySize; }
+    public int listSize() { return list.length; }
+
+    public void read(byte[] buffer, int position, int length) {
+      reads.add(new int[]{position, length});
+      System.arraycopy(list, position, buffer, 0, length);
+    }
+  }
+
+  private static byte[] blanks(int length) {
+    byte[] data = new byte[length];
+    Arrays.fill(data, (byte) 0x40);
+    return data;
+  }
+
+  // PGML0110 entries of the given sizes, module i named MODi
+  private static Space variable(int... sizes) {
+    byte[] list = blanks(Arrays.stream(sizes).sum());
+    int position = 0;
+    for (int i = 0; i < sizes.length; i++) {
+      RecordLayoutTest.bin4(list, position, sizes[i]);
+      RecordLayoutTest.text(list, position + 4, 10, "PGM1");
+      RecordLayoutTest.text(list, position + 24, 10, "MOD" + i);
+      position += sizes[i];
+    }
+    return new Space(list, sizes.length, 0);
+  }
+
+  private static ListEntries entries(Space space) {
+    return new ListEntries(space, EbcdicDecoder.CCSID_37);
+  }
+
+  @Test
+  void fixedSizeEntryStraddlingAChunkIsReadWhole() {
+    int size = 106, count = 200; // Entry 154 runs from 16324 to 16430, across the first chunk
+    byte[] list = blanks(size * count);
+    for (int i = 0; i < count; i++) {
+      RecordLayoutTest.text(list, i * size + 20, 10, "MOD" + i);
+      RecordLayoutTest.text(list, i * size + 93, 13, "1240102030405");
+    }
+    Space space = new Space(list, count, size);
+
+    ListEntries entries = entries(space);
+    for (int i = 0; i < count; i++) {
+      assertTrue(entries.hasNext());
+      RecordLayout.Record entry = entries.next();
+      assertEquals("MOD" + i, entry.text(RecordLayout.PGML0100.MODULE_NAME));
+      assertEquals("1240102030405", entry.text(RecordLayout.PGML0100.SOURCE_UPDATED_DATE_TIME));
+    }
+    assertFalse(entries.hasNext());
+
+    assertEquals(2, space.reads.size());
+    assertEquals(0, space.reads.get(0)[0]);
+    assertEquals(ListEntries.CHUNK, space.reads.get(0)[1]);
+    assertEquals(154 * size, space.reads.get(1)[0]); // The window moves to the straddling entry
+    assertEquals(size * count - 154 * size, space.reads.get(1)[1]);
+  }
+
+  @Test
+  void entryBiggerThanAChunkGetsAWindowOfItsOwn() {
+    Space space = variable(400, ListEntries.CHUNK + 500, 360);
+    ListEntries entries = entries(space);
+
+    assertEquals("MOD0", entries.next().text(RecordLayout.PGML0110.MODULE_NAME));
+    RecordLayout.Record big = entries.next();
+    assertEquals(ListEntries.CHUNK + 500, big.bin4(RecordLayout.PGML0110.ENTRY_SIZE));
+    assertEquals("MOD1", big.text(RecordLayout.PGML0110.MODULE_NAME));
+    assertEquals("MOD2", entries.next().text(RecordLayout.PGML0110.MODULE_NAME));
+    assertFalse(entries.hasNext());
+
+    assertTrue(space.reads.stream().anyMatch(read -> read[0] == 400 && read[1] >= ListEntries.CHUNK + 500));
+  }
+
+  @Test
+  void variableSizeEntriesFollowTheirOwnSize() {
+    int[] sizes = new int[100];
+    for (int i = 0; i < sizes.length; i++) sizes[i] = 354 + (i * 37) % 200; // Creation data of every length
+    Space space = variable(sizes);
+
+    ListEntries entries = entries(space);
+    int count = 0;
+    while (entries.hasNext()) {
+      RecordLayout.Record entry = entries.next();
+      assertEquals(sizes[count], entry.bin4(RecordLayout.PGML0110.ENTRY_SIZE));
+      assertEquals("PGM1", entry.text(RecordLayout.PGML0110.PROGRAM_NAME));
+      assertEquals("MOD" + count, entry.text(RecordLayout.PGML0110.MODULE_NAME));
+      count++;
+    }
+    assertEquals(sizes.length, count);
+    for (int[] read : space.reads) assertTrue(read[1] <= ListEntries.CHUNK);
+  }
+
+  @Test
+  void entrySizeBelowFourIsRejected() {
+    Space space = variable(360, 360);
+    RecordLayoutTest.bin4(space.list, 360, 2);
+    ListEntries entries = entries(space);
+    entries.next();
+
+    IllegalStateException e = assertThrows(IllegalStateException.class, entries::next);
+    assertEquals("Bad entry size 2 at list position 360", e.getMessage());
+  }
+
+  @Test
+  void entryPastTheListSizeIsRejected() {
+    Space space = new Space(blanks(106 * 3 + 50), 4, 106); // The header counts one entry more than the list holds
+    ListEntries entries = entries(space);
+    entries.next();
+    entries.next();
+    entries.next();
+
+    IllegalStateException e = assertThrows(IllegalStateException.class, entries::next);
+    assertEquals("List entry at position 318 runs past the list size 368", e.getMessage());
+  }
+
+  @Test
+  void failedReadNamesTheEntryAndTheSpace() {
+    Space space = new Space(blanks(106), 1, 106) {
+      @Override
+      public void read(byte[] buffer, int position, int length) {
+        throw new IllegalArgumentException("Object not found");
+      }
+    };
+    IllegalStateException e = assertThrows(IllegalStateException.class, entries(space)::next);
+    assertEquals("Could not read list entry 0 from user space APILST0001", e.getMessage());
+  }
+}
@@ -0,0 +1,269 @@
+package com.github.kraudy.api;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.ibm.as400.access.AS400Text;
+
+public class RecordLayoutTest {
+  private static final Charset EBCDIC = Charset.forName("IBM037");
+  private static final EbcdicDecoder DECODER = EbcdicDecoder.CCSID_37;
+
+  // Blank padded EBCDIC field, as the APIs return it
+  static void text(byte[] data, int offset, int length, String value) {
+    Arrays.fill(data, offset, offset + length, (byte) 0x40);
+    byte[] bytes = value.getBytes(EBCDIC);
+    System.arraycopy(bytes, 0, data, offset, bytes.length);
+  }
+
+  static void bin4(byte[] data, int offset, int value) {
+    ApiSession.BIN4.toBytes(value, data, offset);
+  }
+
+  // Receiver of the retrieve APIs: bytes returned and bytes available up front
+  private static byte[] receiver(int length) {
+    byte[] data = new byte[length];
+    Arrays.fill(data, (byte) 0x40);
+    bin4(data, 0, length);
+    bin4(data, 4, length);
+    return data;
+  }
+
+  @Test
+  void tableDecodesLikeJt400() {
+    byte[] field = new byte[40];
+    text(field, 0, 40, "  Customer master, #1 @ $9.99 {a|b} ~ ");
+    String jt400 = ((String) new AS400Text(40, 37).toObject(field)).trim();
+    assertEquals(jt400, DECODER.decode(field, 0, 40));
+
+    // Every byte of the table against the jt400 conversion, for 37 and for a table built through jt400
+    byte[] all = new byte[256];
+    for (int b = 0; b < 256; b++) all[b] = (byte) b;
+    for (int ccsid : new int[]{37, 500}) {
+      EbcdicDecoder decoder = EbcdicDecoder.of(ccsid, new AS400Text(1, ccsid));
+      String expected = (String) new AS400Text(256, ccsid).toObject(all);
+      for (int b = 0x41; b < 256; b++) { // 0x00-0x40 are controls and the pad blank
+        assertEquals(expected.charAt(b), decoder.charAt(all, b), "CCSID " + ccsid + " byte " + b);
+      }
+    }
+    assertEquals(37, EbcdicDecoder.of(37, new AS400Text(1, 37)).ccsid());
+    assertEquals(500, EbcdicDecoder.of(500, new AS400Text(1, 500)).ccsid());
+  }
+
+  @Test
+  void textIsTrimmedOfBlanksAndNulls() {
+    byte[] data = new byte[16];
+    text(data, 0, 16, "  LIB A ");
+    data[14] = 0x00;
+    data[15] = 0x00;
+    RecordLayout.Record record = new RecordLayout.Record(DECODER).wrap(data);
+    assertEquals("LIB A", DECODER.decode(data, 0, 16));
+    assertTrue(DECODER.equals(data, 0, 16, "LIB A"));
+    assertFalse(DECODER.equals(data, 0, 16, "LIB"));
+
+    Arrays.fill(data, (byte) 0x40);
+    assertEquals("", DECODER.decode(data, 0, 16));
+    assertTrue(DECODER.equals(data, 0, 16, ""));
+    assertEquals(' ', record.charAt(RecordLayout.PGML0100.PROGRAM_NAME));
+  }
+
+  @Test
+  void hasIsBoundedByBytesReturned() {
+    byte[] data = receiver(398);
+    bin4(data, 0, 160); // Receiver long enough, the API filled less of it
+    RecordLayout.Record record = new RecordLayout.Record(DECODER).wrap(data);
+    assertTrue(record.has(RecordLayout.PGMI0100.TEXT_DESCRIPTION)); // 110 + 50
+    assertFalse(record.has(RecordLayout.PGMI0100.TYPE_OF_PROGRAM)); // 160 + 1
+    assertFalse(record.has(RecordLayout.PGMI0100.MAX_PARAMETERS));
+
+    byte[] truncated = Arrays.copyOf(receiver(398), 100); // Claims more than the buffer holds
+    record.wrap(truncated);
+    assertTrue(record.has(RecordLayout.PGMI0100.SOURCE_NAME)); // 81 + 10
+    assertFalse(record.has(RecordLayout.PGMI0100.SOURCE_UPDATED_DATE_TIME)); // 91 + 13
+
+    assertFalse(record.wrap(new byte[3]).has(RecordLayout.PGMI0100.BYTES_RETURNED));
+  }
+
+  @Test
+  void pgmi0100() {
+    byte[] data = receiver(398);
+    text(data, 8, 10, "PGM1");
+    text(data, 18, 10, "LIBA");
+    text(data, 28, 10, "QPGMR");
+    text(data, 38, 10, "RPGLE");
+    text(data, 48, 13, "1240102030405");
+    text(data, 61, 10, "QRPGLESRC");
+    text(data, 71, 10, "SRCLIB");
+    text(data, 81, 10, "PGM1");
+    text(data, 91, 13, "1231231235959");
+    text(data, 104, 1, "A");
+    text(data, 105, 1, "U");
+    text(data, 106, 1, "Y");
+    text(data, 110, 50, "Customer maintenance");
+    text(data, 160, 1, "B");
+    text(data, 161, 1, "1");
+    bin4(data, 220, 2);
+    bin4(data, 224, 5);
+    text(data, 348, 10, "PGM1MAIN");
+    text(data, 358, 10, "MODLIB");
+    text(data, 368, 30, "*CALLER");
+
+    RecordLayout.Record record = new RecordLayout.Record(DECODER).wrap(data);
+    assertEquals(398, record.bin4(RecordLayout.PGMI0100.BYTES_RETURNED));
+    assertEquals(398, record.bin4(RecordLayout.PGMI0100.BYTES_AVAILABLE));
+    assertEquals("PGM1", record.text(RecordLayout.PGMI0100.PROGRAM_NAME));
+    assertEquals("LIBA", record.text(RecordLayout.PGMI0100.PROGRAM_LIBRARY));
+    assertEquals("QPGMR", record.text(RecordLayout.PGMI0100.OWNER));
+    assertEquals("RPGLE", record.text(RecordLayout.PGMI0100.ATTRIBUTE));
+    assertEquals("1240102030405", record.text(RecordLayout.PGMI0100.CREATION_DATE_TIME));
+    assertEquals("QRPGLESRC", record.text(RecordLayout.PGMI0100.SOURCE_FILE));
+    assertEquals("SRCLIB", record.text(RecordLayout.PGMI0100.SOURCE_LIBRARY));
+    assertEquals("PGM1", record.text(RecordLayout.PGMI0100.SOURCE_NAME));
+    assertEquals("1231231235959", record.text(RecordLayout.PGMI0100.SOURCE_UPDATED_DATE_TIME));
+    assertEquals('A', record.charAt(RecordLayout.PGMI0100.OBSERVABLE));
+    assertEquals('U', record.charAt(RecordLayout.PGMI0100.USER_PROFILE_OPTION));
+    assertEquals('Y', record.charAt(RecordLayout.PGMI0100.USE_ADOPTED_AUTHORITY));
+    assertEquals("Customer maintenance", record.text(RecordLayout.PGMI0100.TEXT_DESCRIPTION));
+    assertTrue(record.is(RecordLayout.PGMI0100.TYPE_OF_PROGRAM, "B"));
+    assertEquals('1', record.charAt(RecordLayout.PGMI0100.TERASPACE_ENABLED));
+    assertEquals(2, record.bin4(RecordLayout.PGMI0100.MIN_PARAMETERS));
+    assertEquals(5, record.value(RecordLayout.PGMI0100.MAX_PARAMETERS));
+    assertEquals("PGM1MAIN", record.text(RecordLayout.PGMI0100.ENTRY_MODULE));
+    assertEquals("MODLIB", record.text(RecordLayout.PGMI0100.ENTRY_MODULE_LIBRARY));
+    assertEquals("*CALLER", record.value(RecordLayout.PGMI0100.ACTIVATION_GROUP_ATTRIBUTE));
+    assertTrue(record.has(RecordLayout.PGMI0100.ACTIVATION_GROUP_ATTRIBUTE));
+  }
+
+  @Test
+  void spgi0100() {
+    byte[] data = receiver(137);
+    text(data, 8, 10, "SRV1");
+    text(data, 18, 10, "LIBA");
+    text(data, 28, 10, "QPGMR");
+    text(data, 38, 10, "RPGLE");
+    text(data, 48, 13, "1240102030405");
+    text(data, 61, 10, "QSRVSRC");
+    text(data, 71, 10, "SRCLIB");
+    text(data, 81, 10, "SRV1");
+    text(data, 91, 30, "*CALLER");
+    text(data, 121, 16, "0000000000ABCDEF");
+
+    RecordLayout.Record record = new RecordLayout.Record(DECODER).wrap(data);
+    assertEquals("SRV1", record.text(RecordLayout.SPGI0100.PROGRAM_NAME));
+    assertEquals("LIBA", record.text(RecordLayout.SPGI0100.PROGRAM_LIBRARY));
+    assertEquals("QPGMR", record.text(RecordLayout.SPGI0100.OWNER));
+    assertEquals("RPGLE", record.text(RecordLayout.SPGI0100.ATTRIBUTE));
+    assertEquals("1240102030405", record.text(RecordLayout.SPGI0100.CREATION_DATE_TIME));
+    assertEquals("QSRVSRC", record.text(RecordLayout.SPGI0100.EXPORT_SOURCE_FILE));
+    assertEquals("SRCLIB", record.text(RecordLayout.SPGI0100.EXPORT_SOURCE_LIBRARY));
+    assertEquals("SRV1", record.text(RecordLayout.SPGI0100.EXPORT_SOURCE_MEMBER));
+    assertEquals("*CALLER", record.text(RecordLayout.SPGI0100.ACTIVATION_GROUP_ATTRIBUTE));
+    assertEquals("0000000000ABCDEF", record.text(RecordLayout.SPGI0100.CURRENT_EXPORT_SIGNATURE));
+    assertTrue(record.has(RecordLayout.SPGI0100.CURRENT_EXPORT_SIGNATURE));
+  }
+
+  @Test
+  void modi0100() {
+    byte[] data = receiver(144);
+    text(data, 8, 10, "MOD1");
+    text(data, 18, 10, "LIBA");
+    text(data, 28, 10, "SQLRPGLE");
+    text(data, 38, 13, "1240102030405");
+    text(data, 51, 10, "QRPGLESRC");
+    text(data, 61, 10, "SRCLIB");
+    text(data, 71, 10, "MOD1");
+    text(data, 81, 13, "1231231235959");
+    text(data, 94, 50, "Date helpers");
+
+    RecordLayout.Record record = new RecordLayout.Record(DECODER).wrap(data);
+    assertEquals("MOD1", record.text(RecordLayout.MODI0100.MODULE_NAME));
+    assertEquals("LIBA", record.text(RecordLayout.MODI0100.MODULE_LIBRARY));
+    assertEquals("SQLRPGLE", record.text(RecordLayout.MODI0100.ATTRIBUTE));
+    assertEquals("1240102030405", record.text(RecordLayout.MODI0100.CREATION_DATE_TIME));
+    assertEquals("QRPGLESRC", record.text(RecordLayout.MODI0100.SOURCE_FILE));
+    assertEquals("SRCLIB", record.text(RecordLayout.MODI0100.SOURCE_LIBRARY));
+    assertEquals("MOD1", record.text(RecordLayout.MODI0100.SOURCE_NAME));
+    assertEquals("1231231235959", record.text(RecordLayout.MODI0100.SOURCE_UPDATED_DATE_TIME));
+    assertEquals("Date helpers", record.text(RecordLayout.MODI0100.TEXT_DESCRIPTION));
+    assertTrue(record.has(RecordLayout.MODI0100.TEXT_DESCRIPTION));
+  }
+
+  @Test
+  void listEntriesAreReadFromTheirBase() {
+    byte[] data = new byte[20 + 106];
+    Arrays.fill(data, (byte) 0x40);
+    int base = 20; // Second entry of a list, after something else
+    text(data, base, 10, "PGM1");
+    text(data, base + 10, 10, "LIBA");
+    text(data, base + 20, 10, "MOD1");
+    text(data, base + 30, 10, "LIBB");
+    text(data, base + 40, 10, "QRPGLESRC");
+    text(data, base + 50, 10, "SRCLIB");
+    text(data, base + 60, 10, "MOD1");
+    text(data, base + 70, 10, "RPGLE");
+    text(data, base + 80, 13, "1240102030405");
+    text(data, base + 93, 13, "1231231235959");
+
+    RecordLayout.Record record = new RecordLayout.Record(DECODER).wrap(data, base);
+    assertEquals("PGM1", record.text(RecordLayout.PGML0100.PROGRAM_NAME));
+    assertEquals("LIBA", record.text(RecordLayout.PGML0100.PROGRAM_LIBRARY));
+    assertEquals("MOD1", record.text(RecordLayout.PGML0100.MODULE_NAME));
+    assertEquals("LIBB", record.text(RecordLayout.PGML0100.MODULE_LIBRARY));
+    assertEquals("QRPGLESRC", record.text(RecordLayout.PGML0100.SOURCE_FILE));
+    assertEquals("SRCLIB", record.text(RecordLayout.PGML0100.SOURCE_LIBRARY));
+    assertEquals("MOD1", record.text(RecordLayout.PGML0100.SOURCE_NAME));
+    assertEquals("RPGLE", record.text(RecordLayout.PGML0100.MODULE_ATTRIBUTE));
+    assertEquals("1240102030405", record.text(RecordLayout.PGML0100.CREATION_DATE_TIME));
+    assertEquals("1231231235959", record.text(RecordLayout.PGML0100.SOURCE_UPDATED_DATE_TIME));
+
+    byte[] variable = new byte[8 + 354];
+    Arrays.fill(variable, (byte) 0x40);
+    base = 8;
+    bin4(variable, base, 354);
+    text(variable, base + 4, 10, "PGM1");
+    text(variable, base + 14, 10, "LIBA");
+    text(variable, base + 24, 10, "MOD1");
+    text(variable, base + 34, 10, "LIBB");
+    text(variable, base + 44, 10, "QRPGLESRC");
+    text(variable, base + 54, 10, "SRCLIB");
+    text(variable, base + 64, 10, "MOD1");
+    text(variable, base + 74, 10, "RPGLE");
+    text(variable, base + 84, 13, "1240102030405");
+    text(variable, base + 97, 13, "1231231235959");
+    bin4(variable, base + 346, 4096);
+    bin4(variable, base + 350, 512);
+    record.wrap(variable, base);
+    assertEquals(354, record.bin4(RecordLayout.PGML0110.ENTRY_SIZE));
+    assertEquals("PGM1", record.text(RecordLayout.PGML0110.PROGRAM_NAME));
+    assertEquals("LIBA", record.text(RecordLayout.PGML0110.PROGRAM_LIBRARY));
+    assertEquals("MOD1", record.text(RecordLayout.PGML0110.MODULE_NAME));
+    assertEquals("LIBB", record.text(RecordLayout.PGML0110.MODULE_LIBRARY));
+    assertEquals("QRPGLESRC", record.text(RecordLayout.PGML0110.SOURCE_FILE));
+    assertEquals("SRCLIB", record.text(RecordLayout.PGML0110.SOURCE_LIBRARY));
+    assertEquals("MOD1", record.text(RecordLayout.PGML0110.SOURCE_NAME));
+    assertEquals("RPGLE", record.text(RecordLayout.PGML0110.MODULE_ATTRIBUTE));
+    assertEquals("1240102030405", record.text(RecordLayout.PGML0110.CREATION_DATE_TIME));
+    assertEquals("1231231235959", record.text(RecordLayout.PGML0110.SOURCE_UPDATED_DATE_TIME));
+    assertEquals(4096, record.bin4(RecordLayout.PGML0110.CREATION_DATA_OFFSET));
+    assertEquals(512, record.bin4(RecordLayout.PGML0110.CREATION_DATA_LENGTH));
+  }
+
+  @Test
+  void fieldsOfAFormatNeverOverlap() {
+    for (String format : new String[]{"PGMI0100", "SPGI0100", "MODI0100", "PGML0100", "PGML0110", "SPGL0110"}) {
+      int end = 0;
+      for (RecordLayout.Field field : RecordLayout.fields(format)) {
+        assertTrue(field.offset() >= end, format + "." + field.name() + " overlaps the field before it");
+        if (field.kind() == RecordLayout.Kind.BIN4) assertEquals(4, field.length(), format + "." + field.name());
+        end = field.offset() + field.length();
+      }
+    }
+    assertThrows(IllegalArgumentException.class, () -> RecordLayout.fields("PGMI0200"));
+  }
+}
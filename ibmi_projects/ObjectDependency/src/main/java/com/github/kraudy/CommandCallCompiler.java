@@ -0,0 +1,53 @@
+package com.github.kraudy;
+
+import java.util.Map;
+
+import com.ibm.as400.access.AS400;
+import com.ibm.as400.access.AS400Message;
+import com.ibm.as400.access.CommandCall;
+
+/*
+ * Compile session on the host: its own AS400 object, so its own command server job,
+ * with the library list set once. Runs the CRTBNDRPG/CRTSQLRPGI/CRTSRVPGM... command given for each object.
+ */
+public class CommandCallCompiler implements CompileExecutor.Compiler, AutoCloseable {
+  private final AS400 session;
+  private final CommandCall command;
+  private final Map<String, String> commands; // objectKey -> CL command
+  private final boolean verbose;
+
+  public CommandCallCompiler(AS400 system, String libraryListCommand, Map<String, String> commands, boolean verbose) throws Exception {
+    this.session = new AS400(system);
+    this.command = new CommandCall(session);
+    this.commands = commands;
+    this.verbose = verbose;
+    if (!command.run(libraryListCommand)) {
+      close();
+      throw new IllegalStateException("Could not set the library list of a compile session: " + firstMessage());
+    }
+  }
+
+  @Override
+  public boolean compile(String objKey) throws Exception {
+    String cmd = commands.get(objKey);
+    if (verbose) System.out.println("Compiling " + objKey + ": " + cmd);
+    if (command.run(cmd)) return true;
+    System.out.println("Compile of " + objKey + " failed: " + firstMessage());
+    if (verbose) {
+      for (AS400Message message : command.getMessageList()) {
+        System.out.println("  " + message.getID() + " " + message.getText());
+      }
+    }
+    return false;
+  }
+
+  private String firstMessage() {
+    AS400Message[] messages = command.getMessageList();
+    return messages.length == 0 ? "no messages" : messages[0].getID() + " " + messages[0].getText();
+  }
+
+  @Override
+  public void close() {
+    session.disconnectService(AS400.COMMAND);
+  }
+}
@@ -0,0 +1,368 @@
+package com.github.kraudy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Read only copy of the dependency graph for the algorithms that walk it.
+ * Nodes are interned to int ids and the adjacency is kept in compressed sparse row arrays:
+ * the deps of node n are targets[offsets[n]] .. targets[offsets[n + 1] - 1].
+ */
+public class CompactGraph {
+  private final Nodes nodes;
+  private final int[] offsets; // n + 1 entries
+  private final int[] targets; // objectId -> dependsOn ids
+  // Lazy indices are built under the graph lock and published by their volatile field, which is written last:
+  // a thread that sees it non null also sees the arrays written before it
+  private volatile int[] reverseOffsets; // Same layout, dependsOn id -> objects that depend on it. Built on first use
+  private int[] reverseTargets;
+  private volatile int[] component; // node -> strongly connected component. Built on first use
+  private int componentCount;
+  private int[] componentOffsets; // Members of component c are componentMembers[componentOffsets[c]] ..
+  private int[] componentMembers;
+
+  private CompactGraph(Nodes nodes, int[] offsets, int[] targets) {
+    this.nodes = nodes;
+    this.offsets = offsets;
+    this.targets = targets;
+  }
+
+  public static CompactGraph of(Map<String, Set<String>> graph) {
+    Nodes nodes = new Nodes(graph.size());
+    int edgeCount = 0;
+    for (Map.Entry<String, Set<String>> entry : graph.entrySet()) {
+      nodes.intern(entry.getKey());
+      edgeCount += entry.getValue().size();
+    }
+    // Deps missing as keys still get a node
+    for (Set<String> deps : graph.values()) {
+      for (String dep : deps) {
+        nodes.intern(dep);
+      }
+    }
+
+    int[] offsets = new int[nodes.size() + 1];
+    int[] targets = new int[edgeCount];
+    int edge = 0;
+    for (int node = 0; node < nodes.size(); node++) {
+      offsets[node] = edge;
+      Set<String> deps = graph.get(nodes.key(node));
+      if (deps == null) continue;
+      for (String dep : deps) {
+        targets[edge++] = nodes.id(dep);
+      }
+    }
+    offsets[nodes.size()] = edge;
+    return new CompactGraph(nodes, offsets, targets);
+  }
+
+  public Nodes nodes() {
+    return nodes;
+  }
+
+  public int size() {
+    return nodes.size();
+  }
+
+  public int edgeCount() {
+    return targets.length;
+  }
+
+  /* First edge index of node, use with end() and target() */
+  public int start(int node) {
+    return offsets[node];
+  }
+
+  public int end(int node) {
+    return offsets[node + 1];
+  }
+
+  public int target(int edge) {
+    return targets[edge];
+  }
+
+  /* Dependents index: the objects that depend on node are reverseTarget(reverseStart(node)) .. reverseEnd(node) - 1 */
+  public int reverseStart(int node) {
+    buildReverse();
+    return reverseOffsets[node];
+  }
+
+  public int reverseEnd(int node) {
+    buildReverse();
+    return reverseOffsets[node + 1];
+  }
+
+  public int reverseTarget(int edge) {
+    return reverseTargets[edge];
+  }
+
+  /* Builds the dependents and component indices now, so the graph can be shared without any query paying for them */
+  public CompactGraph index() {
+    buildReverse();
+    buildComponents();
+    return this;
+  }
+
+  private void buildReverse() {
+    if (reverseOffsets != null) return;
+    synchronized (this) {
+      if (reverseOffsets == null) countDependents();
+    }
+  }
+
+  private void countDependents() {
+    int n = nodes.size();
+    int[] revOffsets = new int[n + 1];
+    for (int target : targets) {
+      revOffsets[target + 1]++;
+    }
+    for (int node = 0; node < n; node++) {
+      revOffsets[node + 1] += revOffsets[node];
+    }
+    int[] next = Arrays.copyOf(revOffsets, n);
+    int[] revTargets = new int[targets.length];
+    for (int node = 0; node < n; node++) {
+      for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+        revTargets[next[targets[edge]]++] = node;
+      }
+    }
+    this.reverseTargets = revTargets;
+    this.reverseOffsets = revOffsets;
+  }
+
+  /*
+   * Strongly connected components with an iterative Tarjan (explicit stack, so deep chains of
+   * hundreds of thousands of objects can't overflow the thread stack). Every cycle of service programs
+   * or files becomes a single build unit; acyclic objects are a component of their own.
+   * Components are numbered dependencies first: if a depends on b in another component, component(b) < component(a).
+   */
+  private void buildComponents() {
+    if (component != null) return;
+    synchronized (this) {
+      if (component == null) tarjan();
+    }
+  }
+
+  private void tarjan() {
+    int n = nodes.size();
+    int[] index = new int[n];
+    int[] low = new int[n];
+    Arrays.fill(index, -1);
+    boolean[] onStack = new boolean[n];
+    int[] stack = new int[n]; // Tarjan's stack of open nodes
+    int sp = 0;
+    int[] callStack = new int[n]; // Simulated recursion: node and the next edge to visit
+    int[] nextEdge = new int[n];
+    int csp = 0;
+    int counter = 0;
+
+    int[] comp = new int[n];
+    int[] members = new int[n];
+    int[] memberOffsets = new int[n + 1];
+    int comps = 0, placed = 0;
+
+    for (int root = 0; root < n; root++) {
+      if (index[root] != -1) continue;
+      index[root] = low[root] = counter++;
+      stack[sp++] = root;
+      onStack[root] = true;
+      callStack[csp] = root;
+      nextEdge[csp++] = offsets[root];
+
+      while (csp > 0) {
+        int node = callStack[csp - 1];
+        if (nextEdge[csp - 1] < offsets[node + 1]) {
+          int dep = targets[nextEdge[csp - 1]++];
+          if (index[dep] == -1) {
+            index[dep] = low[dep] = counter++;
+            stack[sp++] = dep;
+            onStack[dep] = true;
+            callStack[csp] = dep;
+            nextEdge[csp++] = offsets[dep];
+          } else if (onStack[dep]) {
+            low[node] = Math.min(low[node], index[dep]);
+          }
+          continue;
+        }
+        csp--;
+        if (low[node] == index[node]) {
+          memberOffsets[comps] = placed;
+          int member;
+          do {
+            member = stack[--sp];
+            onStack[member] = false;
+            comp[member] = comps;
+            members[placed++] = member;
+          } while (member != node);
+          comps++;
+        }
+        if (csp > 0) {
+          int parent = callStack[csp - 1];
+          low[parent] = Math.min(low[parent], low[node]);
+        }
+      }
+    }
+    memberOffsets[comps] = placed;
+
+    this.componentCount = comps;
+    this.componentMembers = members;
+    this.componentOffsets = Arrays.copyOf(memberOffsets, comps + 1);
+    this.component = comp;
+  }
+
+  public int componentCount() {
+    buildComponents();
+    return componentCount;
+  }
+
+  public int componentOf(int node) {
+    buildComponents();
+    return component[node];
+  }
+
+  /* Components with more than one object, or an object that depends on itself */
+  public List<List<String>> cycles() {
+    buildComponents();
+    List<List<String>> cycles = new ArrayList<>();
+    for (int c = 0; c < componentCount; c++) {
+      int first = componentOffsets[c];
+      int size = componentOffsets[c + 1] - first;
+      if (size == 1 && !dependsOnItself(componentMembers[first])) continue;
+      cycles.add(componentKeys(c));
+    }
+    return cycles;
+  }
+
+  private boolean dependsOnItself(int node) {
+    for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+      if (targets[edge] == node) return true;
+    }
+    return false;
+  }
+
+  private List<String> componentKeys(int c) {
+    List<String> keys = new ArrayList<>(componentOffsets[c + 1] - componentOffsets[c]);
+    for (int i = componentOffsets[c]; i < componentOffsets[c + 1]; i++) {
+      keys.add(nodes.key(componentMembers[i]));
+    }
+    return keys;
+  }
+
+  /*
+   * Build waves (level sets): wave 0 has the objects with no dependencies, every later wave only
+   * depends on objects of earlier waves, so all objects in a wave can be built at the same time.
+   * The members of a cycle always land in the same wave, since they have to be built as one unit.
+   * The number of waves is the critical path length and the largest wave the useful parallelism.
+   */
+  public List<List<String>> buildWaves() {
+    buildComponents();
+    // Components are numbered dependencies first, so the level of every dep is known when a component is reached
+    int[] level = new int[componentCount];
+    int levels = 0;
+    for (int c = 0; c < componentCount; c++) {
+      int lvl = 0;
+      for (int i = componentOffsets[c]; i < componentOffsets[c + 1]; i++) {
+        int node = componentMembers[i];
+        for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+          int depComp = component[targets[edge]];
+          if (depComp != c) lvl = Math.max(lvl, level[depComp] + 1);
+        }
+      }
+      level[c] = lvl;
+      levels = Math.max(levels, lvl + 1);
+    }
+
+    List<List<String>> waves = new ArrayList<>(levels);
+    for (int i = 0; i < levels; i++) {
+      waves.add(new ArrayList<>());
+    }
+    for (int c = 0; c < componentCount; c++) {
+      waves.get(level[c]).addAll(componentKeys(c));
+    }
+    return waves;
+  }
+
+  /*
+   * Kahn's algorithm over primitive arrays, on the condensed graph so cycles don't stop the sort.
+   * Same order as the map version: objects before the objects they depend on; cycle members come out together.
+   */
+  public List<String> topologicalSort() {
+    buildComponents();
+    int[] indegree = new int[componentCount];
+    for (int node = 0; node < nodes.size(); node++) {
+      for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+        if (component[targets[edge]] != component[node]) indegree[component[targets[edge]]]++;
+      }
+    }
+
+    int[] queue = new int[componentCount]; // Every component is queued once, so a flat array is enough
+    int head = 0, tail = 0;
+    for (int c = 0; c < componentCount; c++) {
+      if (indegree[c] == 0) queue[tail++] = c;
+    }
+
+    List<String> order = new ArrayList<>(nodes.size());
+    while (head < tail) {
+      int c = queue[head++];
+      for (int i = componentOffsets[c]; i < componentOffsets[c + 1]; i++) {
+        int node = componentMembers[i];
+        order.add(nodes.key(node));
+        for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+          int depComp = component[targets[edge]];
+          if (depComp != c && --indegree[depComp] == 0) {
+            queue[tail++] = depComp;
+          }
+        }
+      }
+    }
+    return order;
+  }
+
+  /*
+   * Everything that has to be rebuilt when key changes: the transitive dependents, found with a BFS over
+   * the dependents index and a bitset of visited nodes. Returned dependencies first, so it is a valid rebuild order.
+   * Returns null if key is not in the graph.
+   */
+  public List<String> impactedBy(String key) {
+    int start = nodes.id(key);
+    if (start == -1) return null;
+    buildReverse();
+    buildComponents();
+
+    BitSet visited = new BitSet(nodes.size());
+    int[] queue = new int[nodes.size()];
+    int head = 0, tail = 0;
+    visited.set(start);
+    queue[tail++] = start;
+    while (head < tail) {
+      int node = queue[head++];
+      for (int edge = reverseOffsets[node]; edge < reverseOffsets[node + 1]; edge++) {
+        int dependent = reverseTargets[edge];
+        if (!visited.get(dependent)) {
+          visited.set(dependent);
+          queue[tail++] = dependent;
+        }
+      }
+    }
+
+    // Objects in a cycle with key are impacted too, key itself only if it depends on itself through one
+    if (!dependsOnItself(start) && componentOffsets[component[start] + 1] - componentOffsets[component[start]] == 1) {
+      visited.clear(start);
+    }
+    long[] impacted = new long[visited.cardinality()]; // component << 32 | node, sorts into rebuild order
+    int count = 0;
+    for (int node = visited.nextSetBit(0); node >= 0; node = visited.nextSetBit(node + 1)) {
+      impacted[count++] = ((long) component[node] << 32) | node;
+    }
+    Arrays.sort(impacted);
+    List<String> keys = new ArrayList<>(count);
+    for (long entry : impacted) {
+      keys.add(nodes.key((int) entry));
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,236 @@
+package com.github.kraudy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Rebuilds the graph in dependency order over a set of sessions. Every strongly connected component is one task
+ * (a cycle is compiled member by member in the same task) and starts as soon as every component it depends on
+ * has finished, there are no wave barriers. When a compile fails, everything that depends on it, directly or not,
+ * is skipped. Objects that are not targets (files of other libraries, system objects...) only pass their
+ * readiness along. Scheduling is done on the calling thread only, the sessions just run compiles. A session whose
+ * compiler throws is not used again (the host job may be gone); if every session is lost, what is left is skipped.
+ */
+public class CompileExecutor {
+
+  // One per session. CommandCall based for the host, anything else for tests
+  public interface Compiler {
+    /* Compiles objKey, false if it failed */
+    boolean compile(String objKey) throws Exception;
+  }
+
+  public static class Result {
+    public final List<String> compiled = new ArrayList<>();
+    public final List<String> failed = new ArrayList<>();
+    public final List<String> skipped = new ArrayList<>(); // A dependency failed, or no session was left
+    public final Map<String, Exception> errors = new LinkedHashMap<>(); // Compiler exceptions, by the object that threw
+    public long wallNanos;
+    public long serialNanos; // Sum of every compile, what one session would have taken
+
+    public String summary() {
+      long wallMs = wallNanos / 1_000_000, serialMs = serialNanos / 1_000_000;
+      return "Compiled " + compiled.size() + ", failed " + failed.size() + ", skipped " + skipped.size() +
+             " in " + wallMs + " ms (serial estimate " + serialMs + " ms, speedup " +
+             String.format("%.1f", wallMs == 0 ? 1.0 : (double) serialMs / wallMs) + "x)" +
+             (errors.isEmpty() ? "" : ", " + errors.size() + " sessions lost");
+    }
+  }
+
+  // What a finished task reports back to the scheduler
+  private static class Done {
+    final int component;
+    final Compiler compiler;
+    final boolean ok;
+    final List<String> compiled = new ArrayList<>();
+    String failed;
+    Exception error; // The compiler threw, its session is not reused
+    long nanos;
+
+    Done(int component, Compiler compiler, boolean ok) {
+      this.component = component;
+      this.compiler = compiler;
+      this.ok = ok;
+    }
+  }
+
+  private final CompactGraph graph;
+  private final Set<String> targets; // Objects to compile, the rest of the graph only orders them
+  private final List<Compiler> sessions;
+
+  public CompileExecutor(CompactGraph graph, Set<String> targets, List<Compiler> sessions) {
+    if (sessions.isEmpty()) throw new IllegalArgumentException("At least one compile session is needed");
+    this.graph = graph;
+    this.targets = targets;
+    this.sessions = sessions;
+  }
+
+  public Result run() throws InterruptedException {
+    int components = graph.componentCount();
+    int[] waitingOn = new int[components]; // Dependency components not finished yet
+    List<List<Integer>> members = new ArrayList<>(components); // Targets only
+    List<List<Integer>> nodes = new ArrayList<>(components);
+    List<List<Integer>> dependents = new ArrayList<>(components); // component -> components that depend on it
+    for (int c = 0; c < components; c++) {
+      members.add(new ArrayList<>());
+      nodes.add(new ArrayList<>());
+      dependents.add(new ArrayList<>());
+    }
+    for (int node = 0; node < graph.size(); node++) {
+      int c = graph.componentOf(node);
+      nodes.get(c).add(node);
+      if (targets.contains(graph.nodes().key(node))) members.get(c).add(node);
+    }
+    // Edges of every node count, not only targets: they carry the order through objects that are not rebuilt
+    int[] lastSeen = new int[components]; // Dedups dependent components: lastSeen[dep] == c + 1 once counted for c
+    for (int c = 0; c < components; c++) {
+      for (int node : nodes.get(c)) {
+        for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+          int dep = graph.componentOf(graph.target(edge));
+          if (dep == c || lastSeen[dep] == c + 1) continue;
+          lastSeen[dep] = c + 1;
+          waitingOn[c]++;
+          dependents.get(dep).add(c);
+        }
+      }
+    }
+
+    Result result = new Result();
+    List<Compiler> idle = new ArrayList<>(sessions);
+    Deque<Integer> queued = new ArrayDeque<>(); // Ready to compile, waiting for a session
+    ExecutorService executor = Executors.newFixedThreadPool(sessions.size());
+    CompletionService<Done> completion = new ExecutorCompletionService<>(executor);
+    long start = System.nanoTime();
+    int running = 0;
+    boolean[] skipped = new boolean[components];
+    List<Integer> ready = new ArrayList<>(); // Finished without a session: nothing to compile in them
+    try {
+      for (int c = 0; c < components; c++) {
+        if (waitingOn[c] != 0) continue;
+        if (members.get(c).isEmpty()) {
+          ready.add(c);
+          continue;
+        }
+        queued.add(c);
+      }
+      running += dispatch(completion, idle, queued, members);
+      while (running > 0 || !ready.isEmpty()) {
+        int finished;
+        if (!ready.isEmpty()) {
+          finished = ready.remove(ready.size() - 1);
+        } else {
+          Done done;
+          try {
+            done = completion.take().get();
+          } catch (ExecutionException e) {
+            throw new IllegalStateException("Compile task failed", e.getCause()); // Compiler exceptions are caught in the task
+          }
+          running--;
+          result.serialNanos += done.nanos;
+          result.compiled.addAll(done.compiled);
+          if (done.error == null) {
+            idle.add(done.compiler);
+          } else {
+            result.errors.put(done.failed, done.error);
+          }
+          if (!done.ok) {
+            result.failed.add(done.failed);
+            skipDependents(done.component, dependents, members, skipped, result);
+            running += dispatch(completion, idle, queued, members);
+            continue;
+          }
+          finished = done.component;
+        }
+        for (int dependent : dependents.get(finished)) {
+          if (skipped[dependent] || --waitingOn[dependent] != 0) continue;
+          if (members.get(dependent).isEmpty()) {
+            ready.add(dependent);
+            continue;
+          }
+          queued.add(dependent);
+        }
+        running += dispatch(completion, idle, queued, members);
+      }
+      // Every session was lost: nothing can compile what is still queued
+      for (int c : queued) {
+        if (skipped[c]) continue;
+        skipped[c] = true;
+        for (int node : members.get(c)) {
+          result.skipped.add(graph.nodes().key(node));
+        }
+        skipDependents(c, dependents, members, skipped, result);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    result.wallNanos = System.nanoTime() - start;
+    return result;
+  }
+
+  // Hands queued components to idle sessions, returns how many tasks were started
+  private int dispatch(CompletionService<Done> completion, List<Compiler> idle, Deque<Integer> queued,
+                       List<List<Integer>> members) {
+    int started = 0;
+    while (!queued.isEmpty() && !idle.isEmpty()) {
+      int c = queued.poll();
+      submit(completion, idle.remove(idle.size() - 1), c, members.get(c));
+      started++;
+    }
+    return started;
+  }
+
+  private void submit(CompletionService<Done> completion, Compiler compiler, int component, List<Integer> nodes) {
+    completion.submit(() -> {
+      long start = System.nanoTime();
+      List<String> compiled = new ArrayList<>();
+      for (int node : nodes) {
+        String key = graph.nodes().key(node);
+        boolean ok;
+        Exception error = null;
+        try {
+          ok = compiler.compile(key);
+        } catch (Exception e) {
+          ok = false;
+          error = e;
+        }
+        if (!ok) {
+          Done done = new Done(component, compiler, false);
+          done.compiled.addAll(compiled); // Cycle members built before the failure
+          done.failed = key;
+          done.error = error;
+          done.nanos = System.nanoTime() - start;
+          return done;
+        }
+        compiled.add(key);
+      }
+      Done done = new Done(component, compiler, true);
+      done.compiled.addAll(compiled);
+      done.nanos = System.nanoTime() - start;
+      return done;
+    });
+  }
+
+  // Everything reachable through the dependents index is left out, it would be built over a broken object
+  private void skipDependents(int failed, List<List<Integer>> dependents, List<List<Integer>> members,
+                              boolean[] skipped, Result result) {
+    List<Integer> stack = new ArrayList<>(dependents.get(failed));
+    while (!stack.isEmpty()) {
+      int c = stack.remove(stack.size() - 1);
+      if (skipped[c]) continue;
+      skipped[c] = true;
+      for (int node : members.get(c)) {
+        result.skipped.add(graph.nodes().key(node));
+      }
+      stack.addAll(dependents.get(c));
+    }
+  }
+}
@@ -0,0 +1,889 @@
+package com.github.kraudy;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import com.ibm.as400.access.AS400;
+
+import com.github.kraudy.ObjectDependency.DepObject;
+import com.github.kraudy.ObjectDependency.EdgeType;
+import com.github.kraudy.ObjectDependency.ObjectType;
+import com.github.kraudy.ObjectDependency.SysCmd;
+
+/*
+ * DependencySource over the live system: OBJECT_STATISTICS, the QSYS2 catalog views and CL commands
+ * run through QCMDEXC into outfiles. With more than one session every call borrows its own job (and QTEMP);
+ * the outfile names are fixed, so outLibrary must then be QTEMP.
+ */
+public class Db2DependencySource implements DependencySource {
+  private static final String INVARIANT_CCSID = ObjectDependency.INVARIANT_CCSID;
+  private final AS400 system;
+  private final Connection connection; // Primary session, already has the library list
+  private final int sessions;
+  private final String outLibrary;
+  private final boolean verbose;
+  private final boolean debug;
+  private final PrintStream log; // Diagnostics, stderr when stdout carries an export
+  private List<String> libraryList = new ArrayList<>();
+  private SessionPool pool; // Extra sessions when sessions > 1
+  private final Map<String, String> libLCache = new ConcurrentHashMap<>(); // name/*TYPE -> library, in library list order
+
+  // Host interactions, see Metrics
+  private final Metrics metrics;
+  private final Metrics.Stat sessionWait;
+  private final Metrics.Stat listStat;
+  private final Metrics.Stat preloadStat;
+  private final Metrics.Stat pgmRefAllCmd;
+  private final Metrics.Stat pgmRefAllRead;
+  private final Metrics.Stat pgmRefCmd;
+  private final Metrics.Stat pgmRefRead;
+  private final Metrics.Stat tableStat;
+  private final Metrics.Stat viewStat;
+  private final Metrics.Stat routineStat;
+  private final Metrics.Stat libLStat;
+  private final Metrics.Stat objdCmd;
+  private final Metrics.Stat objdRead;
+  private final Metrics.Stat dbrAllCmd;
+  private final Metrics.Stat dbrAllRead;
+  private final Map<EdgeType, Metrics.Stat> bindingStats = new EnumMap<>(EdgeType.class);
+  private final Map<SysCmd, Metrics.Stat> catalogLibStats = new EnumMap<>(SysCmd.class);
+  private final Map<SysCmd, Metrics.Stat> catalogBatchStats = new EnumMap<>(SysCmd.class);
+
+  // Lambda mapping like Resolver's valueSuppliers: Map ObjectType to a function that resolves deps
+  // Function inputs: (session, String[] {library, objName, objAttr}) -> Set<depKey>
+  private final Map<ObjectType, BiFunction<Connection, String[], Set<String>>> depResolvers = new EnumMap<>(ObjectType.class);
+
+  // Library wide versions of the catalog resolvers: one query per catalog view, the only parameter is the library.
+  // Columns: objName (dependent object in the library), depLib, depName, depType
+  private static final Map<SysCmd, String> catalogBulkQueries = new EnumMap<>(SysCmd.class);
+
+  static {
+    catalogBulkQueries.put(SysCmd.SYSTABLEDEP,
+        "SELECT CAST(DEPENDENT_TABLE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS objName, " +
+        "CAST(BASE_SCHEMA AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
+        "CAST(BASE_TABLE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName, " +
+        "'*FILE' AS depType " +
+        "FROM QSYS2.SYSTABLEDEP WHERE DEPENDENT_SCHEMA = ?");
+    catalogBulkQueries.put(SysCmd.SYSVIEWDEP, // Same direction as getViewDeps
+        "SELECT CAST(BASE_TABLE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS objName, " +
+        "CAST(VIEW_SCHEMA AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
+        "CAST(VIEW_NAME AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName, " +
+        "'*FILE' AS depType " +
+        "FROM QSYS2.SYSVIEWDEP WHERE BASE_SCHEMA = ?");
+    catalogBulkQueries.put(SysCmd.SYSROUTINEDEP,
+        "SELECT CAST(ROUTINE_NAME AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS objName, " +
+        "CAST(DEPENDENT_SCHEMA AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
+        "CAST(DEPENDENT_ROUTINE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName, " +
+        "CAST(DEPENDENT_ROUTINE_TYPE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depType " +
+        "FROM QSYS2.SYSROUTINEDEP WHERE ROUTINE_SCHEMA = ?");
+  }
+
+  // Binding catalog services, one query per library each. Columns: objName, objType (*PGM/*SRVPGM), depLib, depName
+  private static final Map<EdgeType, String> bindingQueries = new EnumMap<>(EdgeType.class);
+
+  static {
+    bindingQueries.put(EdgeType.BOUND_SRVPGM,
+        "SELECT CAST(PROGRAM_NAME AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS objName, " +
+        "CAST(OBJECT_TYPE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS objType, " +
+        "CAST(BOUND_SERVICE_PROGRAM_LIBRARY AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
+        "CAST(BOUND_SERVICE_PROGRAM AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName " +
+        "FROM QSYS2.BOUND_SRVPGM_INFO WHERE PROGRAM_LIBRARY = ?");
+    bindingQueries.put(EdgeType.BOUND_MODULE,
+        "SELECT CAST(PROGRAM_NAME AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS objName, " +
+        "CAST(OBJECT_TYPE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS objType, " +
+        "CAST(BOUND_MODULE_LIBRARY AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
+        "CAST(BOUND_MODULE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName " +
+        "FROM QSYS2.BOUND_MODULE_INFO WHERE PROGRAM_LIBRARY = ?");
+  }
+
+  // Catalog view of each SQL resolver and the column holding the object name in its bulk query
+  private static final Map<ObjectType, SysCmd> catalogViews = new EnumMap<>(ObjectType.class);
+  private static final Map<SysCmd, String> catalogNameColumns = new EnumMap<>(SysCmd.class);
+
+  static {
+    catalogViews.put(ObjectType.TABLE, SysCmd.SYSTABLEDEP);
+    catalogViews.put(ObjectType.LF, SysCmd.SYSTABLEDEP);
+    catalogViews.put(ObjectType.ALIAS, SysCmd.SYSTABLEDEP);
+    catalogViews.put(ObjectType.VIEW, SysCmd.SYSVIEWDEP);
+    catalogViews.put(ObjectType.PROCEDURE, SysCmd.SYSROUTINEDEP);
+    catalogViews.put(ObjectType.FUNCTION, SysCmd.SYSROUTINEDEP);
+    catalogNameColumns.put(SysCmd.SYSTABLEDEP, "DEPENDENT_TABLE");
+    catalogNameColumns.put(SysCmd.SYSVIEWDEP, "BASE_TABLE");
+    catalogNameColumns.put(SysCmd.SYSROUTINEDEP, "ROUTINE_NAME");
+  }
+
+  private interface SessionWork<T> {
+    T apply(Connection session) throws SQLException;
+  }
+
+  public Db2DependencySource(AS400 system, Connection connection, int sessions, String outLibrary, boolean verbose, boolean debug,
+                             Metrics metrics, PrintStream log) {
+    this.system = system;
+    this.connection = connection;
+    this.sessions = sessions;
+    if (sessions > 1 && !outLibrary.equalsIgnoreCase("QTEMP")) {
+      throw new IllegalArgumentException("Outfile library must be QTEMP with more than one session, not " + outLibrary);
+    }
+    this.outLibrary = outLibrary;
+    this.verbose = verbose;
+    this.debug = debug;
+    this.log = log;
+
+    this.metrics = metrics;
+    this.sessionWait = metrics.stat("session wait");
+    this.listStat = metrics.stat("OBJECT_STATISTICS list");
+    this.preloadStat = metrics.stat("OBJECT_STATISTICS *LIBL");
+    this.pgmRefAllCmd = metrics.stat("DSPPGMREF lib/*ALL");
+    this.pgmRefAllRead = metrics.stat("DSPPGMREF lib/*ALL outfile");
+    this.pgmRefCmd = metrics.stat("DSPPGMREF");
+    this.pgmRefRead = metrics.stat("DSPPGMREF outfile");
+    this.tableStat = metrics.stat("SYSTABLEDEP");
+    this.viewStat = metrics.stat("SYSVIEWDEP");
+    this.routineStat = metrics.stat("SYSROUTINEDEP");
+    this.libLStat = metrics.stat("resolveLibL");
+    this.objdCmd = metrics.stat("DSPOBJD *LIBL");
+    this.objdRead = metrics.stat("DSPOBJD outfile");
+    this.dbrAllCmd = metrics.stat("DSPDBR lib/*ALL");
+    this.dbrAllRead = metrics.stat("DSPDBR lib/*ALL outfile");
+    bindingStats.put(EdgeType.BOUND_SRVPGM, metrics.stat("BOUND_SRVPGM_INFO lib"));
+    bindingStats.put(EdgeType.BOUND_MODULE, metrics.stat("BOUND_MODULE_INFO lib"));
+    for (SysCmd cmd : catalogBulkQueries.keySet()) {
+      catalogLibStats.put(cmd, metrics.stat(cmd + " lib"));
+      catalogBatchStats.put(cmd, metrics.stat(cmd + " batch"));
+    }
+
+    initDepResolvers();  // Initialize lambdas like initSuppliers in Resolver
+  }
+
+  private void initDepResolvers() {
+    // Lambdas/Method refs like suppliers in Resolver
+    depResolvers.put(ObjectType.PGM, this::getProgramDeps);
+    depResolvers.put(ObjectType.SRVPGM, this::getProgramDeps);  // Same as PGM (DSPPGMREF works)
+    depResolvers.put(ObjectType.MODULE, this::getProgramDeps);
+    depResolvers.put(ObjectType.TABLE, this::getTableDeps);
+    depResolvers.put(ObjectType.LF, this::getTableDeps);  // Logical depends on physical
+    depResolvers.put(ObjectType.VIEW, this::getViewDeps);
+    depResolvers.put(ObjectType.ALIAS, this::getTableDeps);  // Alias depends on base
+    depResolvers.put(ObjectType.PROCEDURE, this::getRoutineDeps);
+    depResolvers.put(ObjectType.FUNCTION, this::getRoutineDeps);
+  }
+
+  @Override
+  public void open(List<String> libraryList) throws SQLException {
+    this.libraryList = libraryList;
+    preloadLibL();
+    if (sessions > 1) {
+      pool = new SessionPool(system, sessions, "CHGLIBL LIBL(" + String.join(" ", libraryList) + ")");
+    }
+  }
+
+  @Override
+  public void close() {
+    if (pool != null) pool.close();
+    pool = null;
+  }
+
+  /* Runs work on a free session: the primary one if there is no pool */
+  private <T> T withSession(SessionWork<T> work) throws SQLException {
+    if (pool == null) {
+      synchronized (connection) {
+        return work.apply(connection);
+      }
+    }
+    Connection session;
+    long start = System.nanoTime();
+    try {
+      session = pool.take();
+      sessionWait.record(start, 0, 0);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a session", e);
+    }
+    try {
+      return work.apply(session);
+    } finally {
+      pool.release(session);
+    }
+  }
+
+  @Override
+  public List<DepObject> getObjects(String library, String objectName, ObjectType objectType) throws SQLException {
+    return withSession(session -> getObjects(session, library, objectName, objectType));
+  }
+
+  @Override
+  public Map<String, Set<String>> getLibraryProgramDeps(String library) {
+    try {
+      return withSession(session -> getLibraryProgramDeps(session, library));
+    } catch (SQLException e) {
+      if (verbose) e.printStackTrace();
+      return null;
+    }
+  }
+
+  @Override
+  public Map<String, Set<String>> getLibraryCatalogDeps(String library, SysCmd cmd) {
+    if (!catalogBulkQueries.containsKey(cmd)) return null;
+    try {
+      return withSession(session -> getLibraryCatalogDeps(session, library, cmd));
+    } catch (SQLException e) {
+      if (verbose) e.printStackTrace();
+      return null;
+    }
+  }
+
+  @Override
+  public Map<String, Set<String>> getLibraryFileRelations(String library) {
+    try {
+      return withSession(session -> getLibraryFileRelations(session, library));
+    } catch (SQLException e) {
+      if (verbose) e.printStackTrace();
+      return null;
+    }
+  }
+
+  @Override
+  public Map<String, Map<String, EdgeType>> getLibraryBindings(String library) {
+    try {
+      return withSession(session -> getLibraryBindings(session, library));
+    } catch (SQLException e) {
+      if (verbose) e.printStackTrace();
+      return null;
+    }
+  }
+
+  @Override
+  public List<DepObject> describe(Collection<String> keys) throws SQLException {
+    Map<String, Set<String>> namesByLibrary = new HashMap<>();
+    for (String key : keys) {
+      String[] parts = key.split("/", 3);
+      if (parts.length < 3) continue;
+      namesByLibrary.computeIfAbsent(parts[0], k -> new HashSet<>()).add(parts[1]);
+    }
+    List<DepObject> objects = new ArrayList<>();
+    for (Map.Entry<String, Set<String>> entry : namesByLibrary.entrySet()) {
+      String whereClause = " WHERE OBJNAME IN (" + entry.getValue().stream()
+          .map(name -> "'" + name.replace("'", "''") + "'").collect(Collectors.joining(", ")) + ")";
+      for (DepObject obj : withSession(session -> listObjects(session, entry.getKey(), whereClause))) {
+        if (keys.contains(obj.key())) objects.add(obj); // Same name, other type
+      }
+    }
+    return objects;
+  }
+
+  /* Catalog objects in one IN-list query per library and catalog view, programs one DSPPGMREF each */
+  @Override
+  public Map<String, Set<String>> getDeps(List<DepObject> objects) {
+    Map<String, Set<String>> deps = new HashMap<>();
+    Map<SysCmd, Map<String, List<DepObject>>> batches = new EnumMap<>(SysCmd.class); // view -> library -> objects
+    for (DepObject obj : objects) {
+      SysCmd cmd = catalogViews.get(obj.objectType);
+      if (cmd == null) {
+        deps.put(obj.key(), getDeps(obj));
+        continue;
+      }
+      batches.computeIfAbsent(cmd, k -> new HashMap<>()).computeIfAbsent(obj.library, k -> new ArrayList<>()).add(obj);
+    }
+    for (Map.Entry<SysCmd, Map<String, List<DepObject>>> batch : batches.entrySet()) {
+      for (Map.Entry<String, List<DepObject>> library : batch.getValue().entrySet()) {
+        Map<String, Set<String>> refs = null;
+        try {
+          refs = withSession(session -> getCatalogDeps(session, batch.getKey(), library.getKey(), library.getValue()));
+        } catch (SQLException e) {
+          if (verbose) e.printStackTrace();
+        }
+        for (DepObject obj : library.getValue()) {
+          deps.put(obj.key(), refs != null ? refs.getOrDefault(obj.name, new HashSet<>()) : getDeps(obj));
+        }
+      }
+    }
+    return deps;
+  }
+
+  @Override
+  public Set<String> getDeps(DepObject obj) {
+    // Use the resolver map/lambda
+    BiFunction<Connection, String[], Set<String>> resolver = depResolvers.getOrDefault(obj.objectType, (conn, params) -> new HashSet<>());
+    try {
+      return withSession(session -> resolver.apply(session, new String[]{obj.library, obj.name, obj.attribute}));
+    } catch (SQLException e) {
+      if (verbose) e.printStackTrace();
+      return new HashSet<>();
+    }
+  }
+
+  //TODO: Overload this thing to scan the whole library or specific programs
+  private List<DepObject> getObjects(Connection connection, String library, String objectName, ObjectType objectType) throws SQLException {
+    StringBuilder whereClause = new StringBuilder("");
+    // Build whereClause similar to your code, but use shared enums
+    // ...
+    // (Omit for brevity; keep your existing logic, but reference ObjectType enums)
+    if (objectName != null && objectType != null) {
+      whereClause.append(" WHERE OBJNAME = '" + objectName + "' AND ");
+      // Already sanitized in run() TODO: Use only objectName
+      switch (objectType) {
+        case PGM:
+            whereClause.append(" OBJTYPE = '*PGM'");
+            break;
+        case SRVPGM:
+            whereClause.append(" OBJTYPE = '*SRVPGM'");
+            break;
+        case MODULE:
+            whereClause.append(" OBJTYPE = '*MODULE'");
+            break;
+        case TABLE:
+            whereClause.append(" OBJTYPE = '*FILE' AND SQL_OBJECT_TYPE = 'TABLE'");
+            break;
+        case LF:
+            whereClause.append(" OBJTYPE = '*FILE' AND OBJATTRIBUTE = 'LF'");
+            break;
+        case VIEW:
+            whereClause.append(" OBJTYPE = '*FILE' AND SQL_OBJECT_TYPE = 'VIEW'");
+            break;
+        case ALIAS:
+            whereClause.append(" OBJTYPE = '*FILE' AND SQL_OBJECT_TYPE = 'ALIAS'");
+            break;
+        case PROCEDURE:
+            // Procedures are special: Primarily identified by SQL_OBJECT_TYPE; OBJTYPE often '*PGM' or '*SRVPGM' but not always enforced
+            whereClause.append(" SQL_OBJECT_TYPE = 'PROCEDURE'");
+            break;
+        case FUNCTION:
+            // Functions typically '*PGM' with SQL_OBJECT_TYPE
+            whereClause.append(" OBJTYPE = '*PGM' AND SQL_OBJECT_TYPE = 'FUNCTION'");
+            break;
+        default:
+            throw new IllegalArgumentException("Unsupported object type: " + objectType);
+      }
+    }
+    return listObjects(connection, library, whereClause.toString());
+  }
+
+  // One OBJECT_STATISTICS pass over the library, source physical files are left out
+  private List<DepObject> listObjects(Connection connection, String library, String whereClause) throws SQLException {
+    List<DepObject> objects = new ArrayList<>();
+    long start = System.nanoTime();
+    long rows = 0, bytes = 0;
+    try(Statement objsStmt = connection.createStatement();
+        ResultSet rs = objsStmt.executeQuery(
+              "WITH SourcePf (SourcePf) AS ( " + 
+                  "SELECT TABLE_NAME AS SourcePf " +
+                  "FROM QSYS2.SYSTABLES " + 
+                  "WHERE TABLE_SCHEMA = '" + library + "' " +
+                  "AND FILE_TYPE = 'S' " +
+              ") " +
+              "SELECT " +
+                  "CAST(OBJNAME AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS object_name, " +
+                  "CAST(OBJTYPE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS object_type, " +
+                  "CAST(OBJTEXT AS VARCHAR(50) CCSID " + INVARIANT_CCSID + ") AS text_description, " + 
+                  "CAST((CASE WHEN SQL_OBJECT_TYPE IS NOT NULL THEN SQL_OBJECT_TYPE ELSE OBJATTRIBUTE END) AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") As attribute, " +
+                  "CHANGE_TIMESTAMP AS change_timestamp " +
+              "FROM TABLE(QSYS2.OBJECT_STATISTICS('" + library + "', '*ALL')) " +
+              "EXCEPTION JOIN SourcePf " +
+              "ON (SourcePf.SourcePf = OBJNAME AND " +
+                  "OBJTYPE = '*FILE') " +
+              whereClause)){
+      //TODO: Maybe move this out to just use return in the recursion
+      while(rs.next()){
+        String objName = rs.getString("object_name");
+        String objTypeStr = rs.getString("object_type");
+        String objAttr = rs.getString("attribute");
+        String objDesc = rs.getString("text_description");
+        Timestamp changeTs = rs.getTimestamp("change_timestamp");
+        String changed = changeTs != null ? changeTs.toString() : null;
+        rows++;
+        bytes += length(objName) + length(objTypeStr) + length(objAttr) + length(objDesc) + 10; // 10 byte timestamp
+
+        // Log for debugging
+        if (verbose) {
+            log.println("Processing: Library=" + library + ", Object=" + objName + ", Type=" + objTypeStr + ", Attribute=" + (objAttr != null ? objAttr : "NULL"));
+        }
+
+        // Determine ObjectType based on objTypeStr and objAttr
+        ObjectType objTypeEnum;
+        if (objTypeStr.equals("*FILE")) {
+          if (objAttr == null) {
+            if (verbose) {
+              log.println("Skipping *FILE with null attribute: " + objName);
+            }
+            continue;
+          }
+          // For files, use objAttr (which is OBJATTRIBUTE or SQL_OBJECT_TYPE)
+          switch (objAttr) {
+            case "TABLE":
+              objTypeEnum = ObjectType.TABLE;
+              break;
+            case "LF":
+              objTypeEnum = ObjectType.LF;
+              break;
+            case "VIEW":
+              objTypeEnum = ObjectType.VIEW;
+              break;
+            case "ALIAS":
+              objTypeEnum = ObjectType.ALIAS;
+              break;
+            default:
+              // Skip or handle unsupported file subtypes (e.g., log "Unsupported file attribute: " + objAttr)
+              if (verbose) {
+                log.println("Skipping unsupported *FILE with attribute: " + objAttr);
+              }
+              continue;  // Or throw if you want strict enforcement
+          }
+        } else if (objAttr.equals("PROCEDURE") || objAttr.equals("FUNCTION")) {
+          // Override for SQL routines (may appear as *PGM/*SRVPGM)
+          objTypeEnum = objAttr.equals("PROCEDURE") ? ObjectType.PROCEDURE : ObjectType.FUNCTION;
+        } else {
+          // For non-files (e.g., *PGM, *SRVPGM, *MODULE), use objTypeStr
+          try {
+            objTypeEnum = ObjectType.valueOf(objTypeStr.replace("*", "").trim());
+          } catch (IllegalArgumentException e) {
+            if (verbose) {
+              log.println("Skipping unsupported object type: " + objTypeStr);
+            }
+            continue;
+          }
+        }
+
+
+        //ObjectType objTypeEnum = ObjectType.valueOf(objTypeStr.replace("*", "").trim());  // Map "*PGM" to PGM
+        log.println("Library: " + library + ", Object: " + objName + ", Type: " + objTypeStr + ", Attribute: " + objAttr);
+
+        objects.add(new DepObject(library, objName, objTypeStr, objAttr, objTypeEnum, changed));
+      }
+    } catch (SQLException e) {
+      listStat.error();
+      throw e;
+    } finally {
+      listStat.record(start, rows, bytes);
+    }
+    return objects;
+
+  }
+
+  // Bulk version of getProgramDeps: one DSPPGMREF over lib/*ALL and one pass over the outfile
+  private Map<String, Set<String>> getLibraryProgramDeps(Connection session, String library) {
+    Map<String, Set<String>> programRefs = new HashMap<>(); // objectKey -> dependsOn
+    String outfileName = "PGMREFSALL";
+    String commandStr = "DSPPGMREF PGM(" + library + "/*ALL) OUTPUT(*OUTFILE) OBJTYPE(*ALL) " +
+                        "OUTFILE(" + outLibrary + "/" + outfileName + ") OUTMBR(*FIRST *REPLACE)";
+    Metrics.Stat stat = pgmRefAllCmd;
+    long start = System.nanoTime();
+    long rows = 0, bytes = 0;
+    try (Statement cmdStmt = session.createStatement()) {
+      cmdStmt.execute("CALL QSYS2.QCMDEXC('" + commandStr + "')");
+      pgmRefAllCmd.record(start, 0, 0);
+      stat = pgmRefAllRead;
+      start = System.nanoTime();
+      try (ResultSet rsDeps = cmdStmt.executeQuery(
+          "SELECT CAST(WHPNAM AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHPNAM, " +
+          "CAST(WHSPKG AS VARCHAR(1) CCSID " + INVARIANT_CCSID + ") AS WHSPKG, " +
+          "CAST(WHFNAM AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHFNAM, " +
+          "CAST(WHLNAM AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHLNAM, " +
+          "CAST(WHOTYP AS VARCHAR(8) CCSID " + INVARIANT_CCSID + ") AS WHOTYP " +
+          "FROM " + outLibrary + "." + outfileName)) {
+        while (rsDeps.next()) {
+          String pgmName = rsDeps.getString("WHPNAM").trim();
+          String pgmType;
+          rows++;
+          bytes += 39; // WHPNAM, WHSPKG, WHFNAM, WHLNAM, WHOTYP
+          switch (rsDeps.getString("WHSPKG").trim()) {
+            case "P":
+              pgmType = "*PGM";
+              break;
+            case "V":
+              pgmType = "*SRVPGM";
+              break;
+            case "M":
+              pgmType = "*MODULE";
+              break;
+            default:
+              continue; // SQL packages and others are not in the graph
+          }
+          String objKey = library + "/" + pgmName + "/" + pgmType;
+          Set<String> deps = programRefs.computeIfAbsent(objKey, k -> new HashSet<>());
+
+          String depName = rsDeps.getString("WHFNAM").trim();
+          String depLib = rsDeps.getString("WHLNAM").trim();
+          String depType = rsDeps.getString("WHOTYP").trim();
+          if (depName.isEmpty() || depName.equals("*EXPR") || depLib.equals("*EXPR") || depLib.startsWith("Q")) {
+              continue;
+          }
+          depLib = resolveLibL(session, depLib, depName, depType);
+          deps.add(depLib + "/" + depName + "/" + depType);
+        }
+      }
+      pgmRefAllRead.record(start, rows, bytes);
+      return programRefs;
+    } catch (SQLException e) {
+      // Not harvested, getObjects falls back to one DSPPGMREF per object
+      stat.error();
+      stat.record(start, rows, bytes);
+      if (verbose) e.printStackTrace();
+      return null;
+    }
+  }
+
+  /*
+   * One DSPDBR over lib/*ALL: every physical file of the library with the files that depend on it (logical files,
+   * indexes, views, wherever they live). Rows of files without dependents have a blank WHREFI.
+   */
+  private Map<String, Set<String>> getLibraryFileRelations(Connection session, String library) {
+    Map<String, Set<String>> relations = new HashMap<>(); // dependentKey -> physicalKey
+    String outfileName = "DBRALL";
+    String commandStr = "DSPDBR FILE(" + library + "/*ALL) OUTPUT(*OUTFILE) " +
+                        "OUTFILE(" + outLibrary + "/" + outfileName + ") OUTMBR(*FIRST *REPLACE)";
+    Metrics.Stat stat = dbrAllCmd;
+    long start = System.nanoTime();
+    long rows = 0;
+    try (Statement cmdStmt = session.createStatement()) {
+      cmdStmt.execute("CALL QSYS2.QCMDEXC('" + commandStr + "')");
+      dbrAllCmd.record(start, 0, 0);
+      stat = dbrAllRead;
+      start = System.nanoTime();
+      try (ResultSet rs = cmdStmt.executeQuery(
+          "SELECT CAST(WHRLI AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHRLI, " +
+          "CAST(WHRFI AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHRFI, " +
+          "CAST(WHRELI AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHRELI, " +
+          "CAST(WHREFI AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHREFI " +
+          "FROM " + outLibrary + "." + outfileName + " WHERE WHREFI <> ' '")) {
+        while (rs.next()) {
+          rows++;
+          String physicalKey = rs.getString("WHRLI").trim() + "/" + rs.getString("WHRFI").trim() + "/*FILE";
+          String dependentKey = rs.getString("WHRELI").trim() + "/" + rs.getString("WHREFI").trim() + "/*FILE";
+          relations.computeIfAbsent(dependentKey, k -> new HashSet<>()).add(physicalKey);
+        }
+      }
+      dbrAllRead.record(start, rows, rows * 40); // WHRLI, WHRFI, WHRELI, WHREFI
+      return relations;
+    } catch (SQLException e) {
+      // Not harvested, logical files are still covered by SYSTABLEDEP where the catalog has them
+      stat.error();
+      stat.record(start, rows, rows * 40);
+      if (verbose) e.printStackTrace();
+      return null;
+    }
+  }
+
+  /*
+   * Bound service programs and bound modules of every program and service program of the library.
+   * System service programs (Q*) are left out like DSPPGMREF entries from Q libraries; *LIBL is resolved as usual.
+   */
+  private Map<String, Map<String, EdgeType>> getLibraryBindings(Connection session, String library) throws SQLException {
+    Map<String, Map<String, EdgeType>> bindings = new HashMap<>(); // objectKey -> depKey -> type
+    for (Map.Entry<EdgeType, String> query : bindingQueries.entrySet()) {
+      EdgeType type = query.getKey();
+      String depType = type == EdgeType.BOUND_SRVPGM ? "*SRVPGM" : "*MODULE";
+      Metrics.Stat stat = bindingStats.get(type);
+      long start = System.nanoTime();
+      long rows = 0, bytes = 0;
+      try (PreparedStatement stmt = session.prepareStatement(query.getValue())) {
+        stmt.setString(1, library);
+        try (ResultSet rs = stmt.executeQuery()) {
+          while (rs.next()) {
+            String objName = rs.getString("objName").trim();
+            String objType = rs.getString("objType").trim();
+            String depLib = rs.getString("depLib").trim();
+            String depName = rs.getString("depName").trim();
+            rows++;
+            bytes += objName.length() + objType.length() + depLib.length() + depName.length();
+            if (depName.isEmpty() || depLib.startsWith("Q")) continue;
+            depLib = resolveLibL(session, depLib, depName, depType);
+            bindings.computeIfAbsent(library + "/" + objName + "/" + objType, k -> new HashMap<>())
+                    .put(depLib + "/" + depName + "/" + depType, type);
+          }
+        }
+      } catch (SQLException e) {
+        stat.error();
+        throw e;
+      } finally {
+        stat.record(start, rows, bytes);
+      }
+    }
+    return bindings;
+  }
+
+  // Example resolver method (used via lambda)
+  private Set<String> getProgramDeps(Connection session, String[] args) {
+    String library = args[0], objName = args[1], objAttr = args[2];
+    Set<String> deps = new HashSet<>();
+    String outfileName = "PGMREFS";
+    String commandStr = "DSPPGMREF PGM(" + library + "/" + objName + ") OUTPUT(*OUTFILE) OBJTYPE(*ALL) " +
+                        "OUTFILE(" + outLibrary + "/" + outfileName + ") OUTMBR(*FIRST *REPLACE)";
+    Metrics.Stat stat = pgmRefCmd;
+    long start = System.nanoTime();
+    long rows = 0;
+    try (Statement cmdStmt = session.createStatement()) {
+      cmdStmt.execute("CALL QSYS2.QCMDEXC('" + commandStr + "')");
+      pgmRefCmd.record(start, 0, 0);
+      stat = pgmRefRead;
+      start = System.nanoTime();
+      try (ResultSet rsDeps = cmdStmt.executeQuery(
+          "SELECT CAST(WHFNAM AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHFNAM, " +
+          "CAST(WHLNAM AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHLNAM, " +
+          "CAST(WHOTYP AS VARCHAR(8) CCSID " + INVARIANT_CCSID + ") AS WHOTYP " +
+          "FROM " + outLibrary + "." + outfileName)) {
+        while (rsDeps.next()) {
+          rows++;
+          String depName = rsDeps.getString("WHFNAM").trim();
+          String depLib = rsDeps.getString("WHLNAM").trim();
+          String depType = rsDeps.getString("WHOTYP").trim();
+          if (depName.isEmpty() || depName.equals("*EXPR") || depLib.equals("*EXPR") || depLib.startsWith("Q")) {
+              continue;
+          }
+          depLib = resolveLibL(session, depLib, depName, depType);
+          String depKey = depLib + "/" + depName + "/" + depType;
+          deps.add(depKey);
+        }
+      }
+      pgmRefRead.record(start, rows, rows * 28); // WHFNAM, WHLNAM, WHOTYP
+    } catch (SQLException e) {
+        stat.error();
+        stat.record(start, rows, rows * 28);
+        if (verbose) e.printStackTrace();
+    }
+    return deps;
+  }
+
+  // Bulk version of the catalog resolvers: every row of the library in one pass, grouped by dependent object name
+  private Map<String, Set<String>> getLibraryCatalogDeps(Connection session, String library, SysCmd cmd) {
+    Map<String, Set<String>> refs = new HashMap<>(); // objName -> dependsOn
+    Metrics.Stat stat = catalogLibStats.get(cmd);
+    long start = System.nanoTime();
+    long rows = 0, bytes = 0;
+    try (PreparedStatement stmt = session.prepareStatement(catalogBulkQueries.get(cmd))) {
+      stmt.setString(1, library);
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          String objName = rs.getString("objName");
+          String depLib = rs.getString("depLib");
+          String depName = rs.getString("depName");
+          String depType = rs.getString("depType");
+          rows++;
+          bytes += length(objName) + length(depLib) + length(depName) + length(depType);
+          String depKey = depLib.trim() + "/" + depName.trim() + "/" + depType.trim();
+          refs.computeIfAbsent(objName.trim(), k -> new HashSet<>()).add(depKey);
+        }
+      }
+      stat.record(start, rows, bytes);
+      return refs;
+    } catch (SQLException e) {
+      // Not harvested, these objects fall back to their per object resolver
+      stat.error();
+      stat.record(start, rows, bytes);
+      if (verbose) e.printStackTrace();
+      return null;
+    }
+  }
+
+  // getLibraryCatalogDeps narrowed to some objects of the library
+  private Map<String, Set<String>> getCatalogDeps(Connection session, SysCmd cmd, String library, List<DepObject> objects) throws SQLException {
+    Map<String, Set<String>> refs = new HashMap<>(); // objName -> dependsOn
+    Metrics.Stat stat = catalogBatchStats.get(cmd);
+    long start = System.nanoTime();
+    long rows = 0, bytes = 0;
+    String inList = String.join(", ", Collections.nCopies(objects.size(), "?"));
+    try (PreparedStatement stmt = session.prepareStatement(catalogBulkQueries.get(cmd) + " AND " + catalogNameColumns.get(cmd) + " IN (" + inList + ")")) {
+      stmt.setString(1, library);
+      for (int i = 0; i < objects.size(); i++) {
+        stmt.setString(i + 2, objects.get(i).name);
+      }
+      try (ResultSet rs = stmt.executeQuery()) {
+        while (rs.next()) {
+          String objName = rs.getString("objName");
+          String depLib = rs.getString("depLib");
+          String depName = rs.getString("depName");
+          String depType = rs.getString("depType");
+          rows++;
+          bytes += length(objName) + length(depLib) + length(depName) + length(depType);
+          refs.computeIfAbsent(objName.trim(), k -> new HashSet<>()).add(depLib.trim() + "/" + depName.trim() + "/" + depType.trim());
+        }
+      }
+    } catch (SQLException e) {
+      stat.error();
+      throw e;
+    } finally {
+      stat.record(start, rows, bytes);
+    }
+    return refs;
+  }
+
+  // Resolver for table/LF/alias (using SQL instead of command)
+  private Set<String> getTableDeps(Connection session, String[] args) {
+    String library = args[0], objName = args[1];
+    Set<String> deps = new HashSet<>();
+    long start = System.nanoTime();
+    long rows = 0, bytes = 0;
+    try (Statement stmt = session.createStatement();
+        ResultSet rs = stmt.executeQuery(
+              "SELECT CAST(BASE_SCHEMA AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
+              "CAST(BASE_TABLE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName " +
+              "FROM QSYS2.SYSTABLEDEP WHERE DEPENDENT_SCHEMA = '" + library + "' AND DEPENDENT_TABLE = '" + objName + "'")) {
+      while (rs.next()) {
+        String depLib = rs.getString("depLib").trim();
+        String depName = rs.getString("depName").trim();
+        rows++;
+        bytes += depLib.length() + depName.length();
+        String depKey = depLib + "/" + depName + "/*FILE";
+        deps.add(depKey);
+      }
+    } catch (SQLException e) {
+      tableStat.error();
+      if (verbose) e.printStackTrace();
+    } finally {
+      tableStat.record(start, rows, bytes);
+    }
+    return deps;
+  }
+
+  // Similar for views
+  private Set<String> getViewDeps(Connection session, String[] args) {
+    String library = args[0], objName = args[1];
+    Set<String> deps = new HashSet<>();
+    long start = System.nanoTime();
+    long rows = 0, bytes = 0;
+    try (Statement stmt = session.createStatement();
+        ResultSet rs = stmt.executeQuery(
+                "SELECT CAST(VIEW_SCHEMA AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
+                "CAST(VIEW_NAME AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName " +
+                "FROM QSYS2.SYSVIEWDEP WHERE BASE_SCHEMA = '" + library + "' AND BASE_TABLE = '" + objName + "'")) {  // Note: Inverted for dependents, adjust if needed for bases
+      while (rs.next()) {
+          String depLib = rs.getString("depLib").trim();
+          String depName = rs.getString("depName").trim();
+          rows++;
+          bytes += depLib.length() + depName.length();
+          String depKey = depLib + "/" + depName + "/*FILE";
+          deps.add(depKey);
+      }
+    } catch (SQLException e) {
+      viewStat.error();
+      if (verbose) e.printStackTrace();
+    } finally {
+      viewStat.record(start, rows, bytes);
+    }
+    return deps;
+  }
+
+  // For procedures/functions
+  private Set<String> getRoutineDeps(Connection session, String[] args) {
+    String library = args[0], objName = args[1];
+    Set<String> deps = new HashSet<>();
+    long start = System.nanoTime();
+    long rows = 0, bytes = 0;
+    try (Statement stmt = session.createStatement();
+        ResultSet rs = stmt.executeQuery(
+            "SELECT CAST(DEPENDENT_SCHEMA AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
+            "CAST(DEPENDENT_ROUTINE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName, " +
+            "CAST(DEPENDENT_ROUTINE_TYPE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depType " +
+            "FROM QSYS2.SYSROUTINEDEP WHERE ROUTINE_SCHEMA = '" + library + "' AND ROUTINE_NAME = '" + objName + "'")) {
+      while (rs.next()) {
+        String depLib = rs.getString("depLib").trim();
+        String depName = rs.getString("depName").trim();
+        String depType = rs.getString("depType").trim();  // e.g., PROCEDURE or FUNCTION
+        rows++;
+        bytes += depLib.length() + depName.length() + depType.length();
+        String depKey = depLib + "/" + depName + "/" + depType;
+        deps.add(depKey);
+      }
+    } catch (SQLException e) {
+        routineStat.error();
+        if (verbose) e.printStackTrace();
+    } finally {
+      routineStat.record(start, rows, bytes);
+    }
+    return deps;
+  }
+
+  private static int length(String value) {
+    return value == null ? 0 : value.length();
+  }
+
+  /*
+   * Loads name/type -> library for every object in the library list, one OBJECT_STATISTICS query per library.
+   * Libraries are read in list order and the first one wins, same as *LIBL does on the host.
+   */
+  private void preloadLibL() {
+    for (String library : libraryList) {
+      long start = System.nanoTime();
+      long rows = 0;
+      try (Statement stmt = connection.createStatement();
+          ResultSet rs = stmt.executeQuery(
+              "SELECT CAST(OBJNAME AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS object_name, " +
+              "CAST(OBJTYPE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS object_type " +
+              "FROM TABLE(QSYS2.OBJECT_STATISTICS('" + library + "', '*ALL'))")) {
+        while (rs.next()) {
+          libLCache.putIfAbsent(rs.getString("object_name").trim() + "/" + rs.getString("object_type").trim(), library);
+          rows++;
+        }
+      } catch (SQLException e) {
+        preloadStat.error();
+        log.println("Could not preload objects of library " + library + ": Failed");
+        if (verbose) e.printStackTrace();
+      } finally {
+        preloadStat.record(start, rows, rows * 20); // OBJNAME, OBJTYPE
+      }
+    }
+    if (debug) log.println("Preloaded " + libLCache.size() + " *LIBL entries");
+  }
+
+  // Helper for *LIBL resolution (used in resolvers). Answers from the preloaded library list, the host is only asked on a miss
+  private String resolveLibL(Connection session, String depLib, String depName, String depType) {
+    if (!depLib.equals("*LIBL")) return depLib;
+    long start = System.nanoTime();
+    String key = depName + "/" + depType;
+    String library = libLCache.get(key);
+    if (library == null) {
+      // Not inside computeIfAbsent: the DSPOBJD round trip would hold the map bin locked for other sessions.
+      // Two sessions may both ask for the same miss, the first answer is kept
+      String found = findInLibL(session, depLib, depName, depType);
+      library = libLCache.putIfAbsent(key, found);
+      if (library == null) library = found;
+    }
+    libLStat.record(start, 0, 0);
+    return library;
+  }
+
+  private String findInLibL(Connection session, String depLib, String depName, String depType) {
+    String objdOutfile = "OBJD";
+    String resolveCmd = "DSPOBJD OBJ(*LIBL/" + depName + ") OBJTYPE(" + depType + ") " +
+                        "OUTPUT(*OUTFILE) OUTFILE(" + outLibrary + "/" + objdOutfile + ") OUTMBR(*FIRST *REPLACE)";
+    Metrics.Stat stat = objdCmd;
+    long start = System.nanoTime();
+    try (Statement stmt = session.createStatement()) {
+      stmt.execute("CALL QSYS2.QCMDEXC('" + resolveCmd + "')");
+      objdCmd.record(start, 0, 0);
+      stat = objdRead;
+      start = System.nanoTime();
+      try (ResultSet rs = stmt.executeQuery(
+          "SELECT CAST(ODLBNM AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS ODLBNM " +
+          "FROM " + outLibrary + "." + objdOutfile)) {
+        if (rs.next()) {
+          String library = rs.getString("ODLBNM").trim();
+          objdRead.record(start, 1, 10);
+          return library;
+        }
+      }
+      objdRead.record(start, 0, 0);
+    } catch (SQLException e) {
+        stat.error();
+        stat.record(start, 0, 0);
+        if (verbose) e.printStackTrace();
+    }
+    return depLib;  // Fallback, also cached so the miss is not asked again
+  }
+}
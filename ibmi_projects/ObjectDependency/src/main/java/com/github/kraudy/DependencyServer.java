@@ -0,0 +1,152 @@
+package com.github.kraudy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * Local HTTP endpoint for the daemon mode. Serves the last published graph, which is swapped
+ * as a whole after every refresh, so queries never see a half applied update.
+ *   GET /impacted?obj=LIB/NAME/TYPE   what must be rebuilt if obj changes
+ *   GET /deps?obj=LIB/NAME/TYPE       direct dependencies of obj
+ *   GET /order                        build order (dependencies first), waves and cycles
+ *   GET /status                       graph size and last refresh
+ *   GET /metrics                      host interaction and resolver metrics since startup
+ */
+public class DependencyServer {
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+  private final Metrics metrics;
+  private volatile Published published;
+
+  // One refresh worth of answers. The order report is only built if someone asks for it
+  private static class Published {
+    final CompactGraph graph;
+    final long refreshed;
+    volatile String orderJson;
+
+    Published(CompactGraph graph, long refreshed) {
+      this.graph = graph;
+      this.refreshed = refreshed;
+    }
+  }
+
+  /* Listens on the loopback interface only, port 0 picks a free one */
+  public DependencyServer(int port, Metrics metrics) throws IOException {
+    this.metrics = metrics;
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/impacted", exchange -> handle(exchange, this::impacted));
+    server.createContext("/deps", exchange -> handle(exchange, this::deps));
+    server.createContext("/order", exchange -> handle(exchange, this::order));
+    server.createContext("/status", exchange -> handle(exchange, this::status));
+    server.createContext("/metrics", exchange -> handle(exchange, (current, obj) -> metrics.json()));
+    server.setExecutor(executor);
+  }
+
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow(); // The server does not own the executor, its threads would keep the JVM alive
+  }
+
+  /* Indices are built before the swap, so the queries on the pool only ever read the published graph */
+  public void publish(CompactGraph graph) {
+    graph.index();
+    this.published = new Published(graph, System.currentTimeMillis());
+  }
+
+  private interface Query {
+    // Returns the JSON body, null for an unknown object
+    String answer(Published current, String obj);
+  }
+
+  private void handle(HttpExchange exchange, Query query) throws IOException {
+    int status = 200;
+    String body;
+    Published current = published;
+    String obj = parameter(exchange, "obj");
+    if (current == null) {
+      status = 503;
+      body = "{\"error\":\"graph not built yet\"}";
+    } else if (!exchange.getRequestMethod().equals("GET")) {
+      status = 405;
+      body = "{\"error\":\"only GET is supported\"}";
+    } else {
+      body = query.answer(current, obj);
+      if (body == null) {
+        status = 404;
+        body = "{\"error\":\"" + GraphExporter.jsonEscape(String.valueOf(obj)) + " is not in the dependency graph\"}";
+      }
+    }
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static String parameter(HttpExchange exchange, String name) throws UnsupportedEncodingException {
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query == null) return null;
+    for (String pair : query.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq > 0 && pair.substring(0, eq).equals(name)) {
+        return URLDecoder.decode(pair.substring(eq + 1), "UTF-8").trim().toUpperCase();
+      }
+    }
+    return null;
+  }
+
+  private String impacted(Published current, String obj) {
+    String key = ObjectDependency.findKey(current.graph, obj);
+    if (key == null) return null;
+    StringBuilder json = new StringBuilder("{\"impactedBy\":\"").append(GraphExporter.jsonEscape(key)).append("\",\"impacted\":");
+    ObjectDependency.appendJsonArray(json, current.graph.impactedBy(key));
+    return json.append('}').toString();
+  }
+
+  private String deps(Published current, String obj) {
+    String key = ObjectDependency.findKey(current.graph, obj);
+    if (key == null) return null;
+    CompactGraph graph = current.graph;
+    int node = graph.nodes().id(key);
+    List<String> deps = new ArrayList<>(graph.end(node) - graph.start(node));
+    for (int edge = graph.start(node); edge < graph.end(node); edge++) {
+      deps.add(graph.nodes().key(graph.target(edge)));
+    }
+    StringBuilder json = new StringBuilder("{\"object\":\"").append(GraphExporter.jsonEscape(key)).append("\",\"dependsOn\":");
+    ObjectDependency.appendJsonArray(json, deps);
+    return json.append('}').toString();
+  }
+
+  private String order(Published current, String obj) {
+    if (current.orderJson == null) {
+      current.orderJson = ObjectDependency.orderJson(current.graph);
+    }
+    return current.orderJson;
+  }
+
+  private String status(Published current, String obj) {
+    return "{\"nodes\":" + current.graph.size() + ",\"edges\":" + current.graph.edgeCount() +
+           ",\"refreshed\":" + current.refreshed + "}";
+  }
+}
@@ -0,0 +1,61 @@
+package com.github.kraudy;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.kraudy.ObjectDependency.DepObject;
+import com.github.kraudy.ObjectDependency.EdgeType;
+import com.github.kraudy.ObjectDependency.ObjectType;
+import com.github.kraudy.ObjectDependency.SysCmd;
+
+/*
+ * Where ObjectDependency gets objects and their dependencies from. Db2DependencySource reads the
+ * live QSYS2 catalog and runs CL commands; SyntheticDependencySource generates a catalog in memory.
+ * Implementations must allow concurrent calls, ObjectDependency scans libraries and resolves objects on several threads.
+ */
+public interface DependencySource extends AutoCloseable {
+
+  /* Called once before the scan, with the library list in search order */
+  void open(List<String> libraryList) throws SQLException;
+
+  /* Objects of the library that have a resolver. objectName/objectType narrow it to one object, both or neither */
+  List<DepObject> getObjects(String library, String objectName, ObjectType objectType) throws SQLException;
+
+  /* objectKey -> dependsOn for every PGM/SRVPGM/MODULE of the library in one go, null if not available */
+  Map<String, Set<String>> getLibraryProgramDeps(String library);
+
+  /* objName -> dependsOn for every object of the library covered by a catalog view in one go, null if not available */
+  Map<String, Set<String>> getLibraryCatalogDeps(String library, SysCmd cmd);
+
+  /* dependentFileKey -> physical files of the library it is built over (logicals, indexes, views), null if not available */
+  default Map<String, Set<String>> getLibraryFileRelations(String library) {
+    return null;
+  }
+
+  /* objectKey -> bound service program or module key -> binding type, for every PGM/SRVPGM of the library. Null if not available */
+  default Map<String, Map<String, EdgeType>> getLibraryBindings(String library) {
+    return null;
+  }
+
+  /* The objects behind some keys (LIB/NAME/TYPE), keys that are not found or have no resolver are left out */
+  List<DepObject> describe(Collection<String> keys) throws SQLException;
+
+  /* Dependencies of a single object */
+  Set<String> getDeps(DepObject obj);
+
+  /* objectKey -> dependsOn for several objects, implementations batch what they can */
+  default Map<String, Set<String>> getDeps(List<DepObject> objects) {
+    Map<String, Set<String>> deps = new HashMap<>();
+    for (DepObject obj : objects) {
+      deps.put(obj.key(), getDeps(obj));
+    }
+    return deps;
+  }
+
+  @Override
+  void close();
+}
@@ -0,0 +1,196 @@
+package com.github.kraudy;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.kraudy.ObjectDependency.EdgeType;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/*
+ * Differences between two graph snapshots, e.g. the dev and the production libraries before a promotion.
+ * The deps of a node in both snapshots are compared as sets, then their edge types, stopping at the first difference.
+ * That is a hash lookup per edge, so the whole diff is linear in nodes plus edges; only the node keys are sorted.
+ * Output is written as it is found, one tab separated line per difference, nodes in key order:
+ *   + N <objectKey>                      only in the second snapshot
+ *   - N <objectKey>                      only in the first snapshot
+ *   ~ N <objectKey>                      in both, its edges differ
+ *   + E <objectKey> <dependsOnKey> <type>
+ *   - E <objectKey> <dependsOnKey> <type>
+ *   ~ E <objectKey> <dependsOnKey> <oldType>><newType>
+ * Change timestamps are not compared, they always differ between environments.
+ */
+@Command(name = "diff", mixinStandardHelpOptions = true, description = "Compares two graph snapshots")
+public class GraphDiff implements Runnable {
+
+  public static class Summary {
+    public long addedNodes, removedNodes, changedNodes;
+    public long addedEdges, removedEdges, changedEdges;
+
+    public boolean isEmpty() {
+      return addedNodes + removedNodes + changedNodes == 0;
+    }
+
+    @Override
+    public String toString() {
+      return "Nodes: +" + addedNodes + " -" + removedNodes + " ~" + changedNodes +
+             ", edges: +" + addedEdges + " -" + removedEdges + " ~" + changedEdges;
+    }
+  }
+
+  @Parameters(index = "0", description = "First snapshot (e.g., dev)")
+  private File beforeFile;
+
+  @Parameters(index = "1", description = "Second snapshot (e.g., production)")
+  private File afterFile;
+
+  @Option(names = "--rename", arity = "1..*", description = "Library of the first snapshot to compare as a library of the second (e.g., DEVLIB=PRODLIB)")
+  private Map<String, String> renames = new HashMap<>();
+
+  @Option(names = "--out", description = "File for the differences (default: stdout)")
+  private File outFile;
+
+  private GraphSnapshot before;
+  private GraphSnapshot after;
+
+  public GraphDiff(GraphSnapshot before, GraphSnapshot after) {
+    this.before = before;
+    this.after = after;
+  }
+
+  // Command line, the snapshots are loaded in run()
+  GraphDiff() {
+  }
+
+  @Override
+  public void run() {
+    long start = System.nanoTime();
+    try {
+      before = GraphSnapshot.load(beforeFile);
+      after = GraphSnapshot.load(afterFile);
+      if (!renames.isEmpty()) before = renamed(before, renames);
+      Summary summary;
+      if (outFile == null) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        summary = write(out);
+        out.flush(); // System.out is left open
+      } else {
+        try (Writer out = Files.newBufferedWriter(outFile.toPath(), StandardCharsets.UTF_8)) {
+          summary = write(out);
+        }
+      }
+      System.err.println(summary + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    } catch (IOException e) {
+      System.err.println("Could not diff " + beforeFile + " and " + afterFile + ": " + e.getMessage());
+    }
+  }
+
+  /* Streams every difference to out. out is not closed */
+  public Summary write(Writer out) throws IOException {
+    Summary summary = new Summary();
+    Map<String, Set<String>> left = before.graph();
+    Map<String, Set<String>> right = after.graph();
+
+    List<String> keys = new ArrayList<>(right.size() + left.size() / 8);
+    keys.addAll(right.keySet());
+    for (String key : left.keySet()) {
+      if (!right.containsKey(key)) keys.add(key);
+    }
+    Collections.sort(keys);
+
+    for (String key : keys) {
+      Set<String> was = left.get(key);
+      Set<String> is = right.get(key);
+      if (was == null) {
+        summary.addedNodes++;
+        out.write("+\tN\t" + key + "\n");
+        for (String dep : is) {
+          summary.addedEdges++;
+          out.write("+\tE\t" + key + "\t" + dep + "\t" + after.edgeType(key, dep) + "\n");
+        }
+        continue;
+      }
+      if (is == null) {
+        summary.removedNodes++;
+        out.write("-\tN\t" + key + "\n");
+        for (String dep : was) {
+          summary.removedEdges++;
+          out.write("-\tE\t" + key + "\t" + dep + "\t" + before.edgeType(key, dep) + "\n");
+        }
+        continue;
+      }
+      if (was.equals(is) && sameTypes(key, is)) continue;
+
+      summary.changedNodes++;
+      out.write("~\tN\t" + key + "\n");
+      for (String dep : is) {
+        EdgeType type = after.edgeType(key, dep);
+        if (!was.contains(dep)) {
+          summary.addedEdges++;
+          out.write("+\tE\t" + key + "\t" + dep + "\t" + type + "\n");
+        } else if (before.edgeType(key, dep) != type) {
+          summary.changedEdges++;
+          out.write("~\tE\t" + key + "\t" + dep + "\t" + before.edgeType(key, dep) + ">" + type + "\n");
+        }
+      }
+      for (String dep : was) {
+        if (is.contains(dep)) continue;
+        summary.removedEdges++;
+        out.write("-\tE\t" + key + "\t" + dep + "\t" + before.edgeType(key, dep) + "\n");
+      }
+    }
+    return summary;
+  }
+
+  private boolean sameTypes(String key, Set<String> deps) {
+    for (String dep : deps) {
+      if (before.edgeType(key, dep) != after.edgeType(key, dep)) return false;
+    }
+    return true;
+  }
+
+  /* Same snapshot with the libraries of every key renamed, so DEVLIB/X/*PGM and PRODLIB/X/*PGM are the same node */
+  static GraphSnapshot renamed(GraphSnapshot snapshot, Map<String, String> renames) {
+    Map<String, String> upper = new HashMap<>();
+    renames.forEach((from, to) -> upper.put(from.trim().toUpperCase(), to.trim().toUpperCase()));
+    Map<String, Set<String>> graph = new HashMap<>(snapshot.graph().size() * 2);
+    Map<String, EdgeType> edgeTypes = new HashMap<>();
+    for (Map.Entry<String, Set<String>> entry : snapshot.graph().entrySet()) {
+      String key = rename(entry.getKey(), upper);
+      Set<String> deps = graph.computeIfAbsent(key, k -> new HashSet<>());
+      for (String dep : entry.getValue()) {
+        String renamedDep = rename(dep, upper);
+        deps.add(renamedDep);
+        EdgeType type = snapshot.edgeType(entry.getKey(), dep);
+        if (type != EdgeType.REFERENCE) edgeTypes.put(ObjectDependency.edgeKey(key, renamedDep), type);
+      }
+    }
+    return new GraphSnapshot(graph, new HashMap<>(), edgeTypes);
+  }
+
+  private static String rename(String key, Map<String, String> renames) {
+    int slash = key.indexOf('/');
+    if (slash < 0) return key;
+    String library = renames.get(key.substring(0, slash));
+    return library == null ? key : library + key.substring(slash);
+  }
+
+  public static void main(String... args) {
+    System.exit(new CommandLine(new GraphDiff()).execute(args));
+  }
+}
@@ -0,0 +1,210 @@
+package com.github.kraudy;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.kraudy.ObjectDependency.EdgeType;
+
+/*
+ * Streaming graph exporters. Nodes and edges are written one at a time straight from the graph,
+ * nothing is buffered besides the writer itself, so the output can have millions of edges.
+ */
+public abstract class GraphExporter {
+  enum Format { JSON, DOT, GRAPHML }
+
+  protected final Writer out;
+
+  protected GraphExporter(Writer out) {
+    this.out = out;
+  }
+
+  public static GraphExporter of(Format format, Writer out) {
+    switch (format) {
+      case JSON:
+        return new JsonExporter(out);
+      case DOT:
+        return new DotExporter(out);
+      case GRAPHML:
+        return new GraphMlExporter(out);
+      default:
+        throw new IllegalArgumentException("Unsupported export format: " + format);
+    }
+  }
+
+  public void export(Map<String, Set<String>> graph) throws IOException {
+    export(graph, Collections.emptyMap());
+  }
+
+  /* Writes every node, then every edge (objectKey -> dependsOn) with its type, edges missing from edgeTypes are references */
+  public void export(Map<String, Set<String>> graph, Map<String, EdgeType> edgeTypes) throws IOException {
+    begin();
+    for (String node : graph.keySet()) {
+      node(node);
+    }
+    betweenNodesAndEdges();
+    for (Map.Entry<String, Set<String>> entry : graph.entrySet()) {
+      for (String dep : entry.getValue()) {
+        edge(entry.getKey(), dep, edgeTypes.getOrDefault(ObjectDependency.edgeKey(entry.getKey(), dep), EdgeType.REFERENCE));
+      }
+    }
+    end();
+    out.flush();
+  }
+
+  protected abstract void begin() throws IOException;
+  protected abstract void node(String key) throws IOException;
+  protected void betweenNodesAndEdges() throws IOException {}
+  protected abstract void edge(String from, String to, EdgeType type) throws IOException;
+  protected abstract void end() throws IOException;
+
+  /* LIB/NAME/*TYPE -> {LIB, NAME, *TYPE}, missing parts are empty */
+  static String[] splitKey(String key) {
+    String[] parts = key.split("/", 3);
+    String[] fields = {"", "", ""};
+    System.arraycopy(parts, 0, fields, 0, parts.length);
+    return fields;
+  }
+
+  static String jsonEscape(String value) {
+    StringBuilder escaped = new StringBuilder(value.length());
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"':  escaped.append("\\\""); break;
+        case '\\': escaped.append("\\\\"); break;
+        default:
+          if (c < 0x20) escaped.append(String.format("\\u%04x", (int) c));
+          else escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  static String xmlEscape(String value) {
+    StringBuilder escaped = new StringBuilder(value.length());
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '&':  escaped.append("&amp;"); break;
+        case '<':  escaped.append("&lt;"); break;
+        case '>':  escaped.append("&gt;"); break;
+        case '"':  escaped.append("&quot;"); break;
+        case '\'': escaped.append("&apos;"); break;
+        default:   escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  // {"nodes":[{"id":..,"library":..,"name":..,"type":..}],"edges":[{"from":..,"to":..,"type":..}]}
+  static class JsonExporter extends GraphExporter {
+    private boolean first = true;
+
+    JsonExporter(Writer out) {
+      super(out);
+    }
+
+    @Override
+    protected void begin() throws IOException {
+      out.write("{\"nodes\":[");
+    }
+
+    @Override
+    protected void node(String key) throws IOException {
+      String[] fields = splitKey(key);
+      out.write((first ? "\n" : ",\n") + "{\"id\":\"" + jsonEscape(key) + "\",\"library\":\"" + jsonEscape(fields[0]) +
+                "\",\"name\":\"" + jsonEscape(fields[1]) + "\",\"type\":\"" + jsonEscape(fields[2]) + "\"}");
+      first = false;
+    }
+
+    @Override
+    protected void betweenNodesAndEdges() throws IOException {
+      out.write("\n],\"edges\":[");
+      first = true;
+    }
+
+    @Override
+    protected void edge(String from, String to, EdgeType type) throws IOException {
+      out.write((first ? "\n" : ",\n") + "{\"from\":\"" + jsonEscape(from) + "\",\"to\":\"" + jsonEscape(to) + "\",\"type\":\"" + type + "\"}");
+      first = false;
+    }
+
+    @Override
+    protected void end() throws IOException {
+      out.write("\n]}\n");
+    }
+  }
+
+  // Graphviz: dot -Tsvg graph.dot -o graph.svg
+  static class DotExporter extends GraphExporter {
+    DotExporter(Writer out) {
+      super(out);
+    }
+
+    private static String quote(String value) {
+      return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    @Override
+    protected void begin() throws IOException {
+      out.write("digraph dependencies {\n  rankdir=LR;\n  node [shape=box];\n");
+    }
+
+    @Override
+    protected void node(String key) throws IOException {
+      out.write("  " + quote(key) + ";\n");
+    }
+
+    @Override
+    protected void edge(String from, String to, EdgeType type) throws IOException {
+      // Bindings drawn dashed: service programs bold, modules plain
+      String style = type == EdgeType.BOUND_SRVPGM ? " [style=\"dashed,bold\"]" : type == EdgeType.BOUND_MODULE ? " [style=dashed]" : "";
+      out.write("  " + quote(from) + " -> " + quote(to) + style + ";\n");
+    }
+
+    @Override
+    protected void end() throws IOException {
+      out.write("}\n");
+    }
+  }
+
+  static class GraphMlExporter extends GraphExporter {
+    private long edgeId = 0;
+
+    GraphMlExporter(Writer out) {
+      super(out);
+    }
+
+    @Override
+    protected void begin() throws IOException {
+      out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n" +
+                "  <key id=\"library\" for=\"node\" attr.name=\"library\" attr.type=\"string\"/>\n" +
+                "  <key id=\"name\" for=\"node\" attr.name=\"name\" attr.type=\"string\"/>\n" +
+                "  <key id=\"type\" for=\"node\" attr.name=\"type\" attr.type=\"string\"/>\n" +
+                "  <key id=\"edgeType\" for=\"edge\" attr.name=\"type\" attr.type=\"string\"/>\n" +
+                "  <graph id=\"dependencies\" edgedefault=\"directed\">\n");
+    }
+
+    @Override
+    protected void node(String key) throws IOException {
+      String[] fields = splitKey(key);
+      out.write("    <node id=\"" + xmlEscape(key) + "\">" +
+                "<data key=\"library\">" + xmlEscape(fields[0]) + "</data>" +
+                "<data key=\"name\">" + xmlEscape(fields[1]) + "</data>" +
+                "<data key=\"type\">" + xmlEscape(fields[2]) + "</data></node>\n");
+    }
+
+    @Override
+    protected void edge(String from, String to, EdgeType type) throws IOException {
+      out.write("    <edge id=\"e" + (edgeId++) + "\" source=\"" + xmlEscape(from) + "\" target=\"" + xmlEscape(to) + "\">" +
+                "<data key=\"edgeType\">" + type + "</data></edge>\n");
+    }
+
+    @Override
+    protected void end() throws IOException {
+      out.write("  </graph>\n</graphml>\n");
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.github.kraudy;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.kraudy.ObjectDependency.EdgeType;
+
+/*
+ * Dependency graph saved to a local file, with the OBJECT_STATISTICS change timestamp of every scanned object.
+ * Plain text, one line per node or edge, tab separated:
+ *   N <objectKey> <changeTimestamp or ->
+ *   E <objectKey> <dependsOnKey> [edgeType]   (the type is only written for ILE bindings)
+ */
+public class GraphSnapshot {
+  static final String HEADER = "# ObjectDependency graph snapshot v1";
+  static final String NO_STAMP = "-"; // Nodes only known as dependencies of something else
+
+  private final Map<String, Set<String>> graph; // objectKey -> dependsOn
+  private final Map<String, String> changeStamps; // objectKey -> change timestamp
+  private final Map<String, EdgeType> edgeTypes; // ObjectDependency.edgeKey -> type, REFERENCE edges are not in it
+
+  public GraphSnapshot(Map<String, Set<String>> graph, Map<String, String> changeStamps, Map<String, EdgeType> edgeTypes) {
+    this.graph = graph;
+    this.changeStamps = changeStamps;
+    this.edgeTypes = edgeTypes;
+  }
+
+  public Map<String, Set<String>> graph() {
+    return graph;
+  }
+
+  public Map<String, String> changeStamps() {
+    return changeStamps;
+  }
+
+  /* True if the object was scanned before and has not changed since */
+  public boolean isCurrent(String objKey, String changeStamp) {
+    return changeStamp != null && changeStamp.equals(changeStamps.get(objKey));
+  }
+
+  public Map<String, EdgeType> edgeTypes() {
+    return edgeTypes;
+  }
+
+  public EdgeType edgeType(String objKey, String depKey) {
+    return edgeTypes.getOrDefault(ObjectDependency.edgeKey(objKey, depKey), EdgeType.REFERENCE);
+  }
+
+  public Set<String> dependsOn(String objKey) {
+    return graph.getOrDefault(objKey, Collections.emptySet());
+  }
+
+  public static GraphSnapshot load(File file) throws IOException {
+    Map<String, Set<String>> graph = new HashMap<>();
+    Map<String, String> changeStamps = new HashMap<>();
+    Map<String, EdgeType> edgeTypes = new HashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      if (line == null || !line.equals(HEADER)) {
+        throw new IOException("Not a graph snapshot: " + file);
+      }
+      while ((line = reader.readLine()) != null) {
+        if (line.isEmpty()) continue;
+        String[] fields = line.split("\t");
+        if (fields.length != 3 && !(fields.length == 4 && fields[0].equals("E"))) {
+          throw new IOException("Malformed snapshot line: " + line);
+        }
+        switch (fields[0]) {
+          case "N":
+            graph.putIfAbsent(fields[1], new HashSet<>());
+            if (!fields[2].equals(NO_STAMP)) changeStamps.put(fields[1], fields[2]);
+            break;
+          case "E":
+            graph.computeIfAbsent(fields[1], k -> new HashSet<>()).add(fields[2]);
+            graph.putIfAbsent(fields[2], new HashSet<>());
+            if (fields.length == 4) {
+              try {
+                edgeTypes.put(ObjectDependency.edgeKey(fields[1], fields[2]), EdgeType.valueOf(fields[3]));
+              } catch (IllegalArgumentException e) {
+                throw new IOException("Unknown edge type in snapshot line: " + line);
+              }
+            }
+            break;
+          default:
+            throw new IOException("Malformed snapshot line: " + line);
+        }
+      }
+    }
+    return new GraphSnapshot(graph, changeStamps, edgeTypes);
+  }
+
+  /* Writes to a temporary file first so a failed run never leaves half a snapshot behind */
+  public void save(File file) throws IOException {
+    Path target = file.toPath().toAbsolutePath();
+    Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      for (String node : graph.keySet()) {
+        writer.write("N\t" + node + "\t" + changeStamps.getOrDefault(node, NO_STAMP));
+        writer.newLine();
+      }
+      for (Map.Entry<String, Set<String>> entry : graph.entrySet()) {
+        for (String dep : entry.getValue()) {
+          EdgeType type = edgeType(entry.getKey(), dep);
+          writer.write("E\t" + entry.getKey() + "\t" + dep + (type == EdgeType.REFERENCE ? "" : "\t" + type));
+          writer.newLine();
+        }
+      }
+    }
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+  }
+}
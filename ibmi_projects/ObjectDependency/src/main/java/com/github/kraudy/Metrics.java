@@ -0,0 +1,133 @@
+package com.github.kraudy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Call counts, latency, rows and bytes per host interaction or resolver. Cheap enough to stay on:
+ * a record is a few LongAdder increments and one slot of a log2 latency histogram, nothing is allocated.
+ * Callers keep the Stat they got from stat() instead of looking it up on every call.
+ */
+public class Metrics {
+  private final Map<String, Stat> stats = new ConcurrentHashMap<>();
+
+  public Stat stat(String name) {
+    return stats.computeIfAbsent(name, Stat::new);
+  }
+
+  public Collection<Stat> stats() {
+    List<Stat> used = new ArrayList<>();
+    for (Stat stat : stats.values()) {
+      if (stat.calls() > 0) used.add(stat);
+    }
+    used.sort((a, b) -> Long.compare(b.totalNanos(), a.totalNanos())); // Most expensive first
+    return used;
+  }
+
+  public static class Stat {
+    // Bucket b counts calls that took [2^(b-1), 2^b) microseconds, bucket 0 is under 1 us
+    private static final int BUCKETS = 40;
+
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    Stat(String name) {
+      this.name = name;
+    }
+
+    /* startNanos is a System.nanoTime() taken before the call */
+    public void record(long startNanos, long rowCount, long byteCount) {
+      long elapsed = System.nanoTime() - startNanos;
+      calls.increment();
+      nanos.add(elapsed);
+      if (rowCount > 0) rows.add(rowCount);
+      if (byteCount > 0) bytes.add(byteCount);
+      long micros = elapsed / 1000;
+      histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+    }
+
+    public void error() {
+      errors.increment();
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public long calls() {
+      return calls.sum();
+    }
+
+    public long errors() {
+      return errors.sum();
+    }
+
+    public long totalNanos() {
+      return nanos.sum();
+    }
+
+    public long rows() {
+      return rows.sum();
+    }
+
+    public long bytes() {
+      return bytes.sum();
+    }
+
+    /* Upper bound in microseconds of the bucket holding the p-th percentile (0 < p <= 1) */
+    public long percentileMicros(double p) {
+      long total = 0;
+      long[] counts = new long[BUCKETS];
+      for (int b = 0; b < BUCKETS; b++) {
+        counts[b] = histogram.get(b);
+        total += counts[b];
+      }
+      long rank = (long) Math.ceil(total * p);
+      long seen = 0;
+      for (int b = 0; b < BUCKETS; b++) {
+        seen += counts[b];
+        if (seen >= rank && seen > 0) return 1L << b;
+      }
+      return 0;
+    }
+  }
+
+  public String table() {
+    StringBuilder table = new StringBuilder(String.format("%-28s %9s %7s %11s %10s %10s %10s %12s %14s%n",
+        "Interaction", "Calls", "Errors", "Total ms", "Avg us", "p50 us", "p99 us", "Rows", "Bytes"));
+    for (Stat stat : stats()) {
+      table.append(String.format("%-28s %9d %7d %11d %10d %10d %10d %12d %14d%n", stat.name, stat.calls(), stat.errors(),
+          stat.totalNanos() / 1_000_000, stat.totalNanos() / 1000 / stat.calls(),
+          stat.percentileMicros(0.5), stat.percentileMicros(0.99), stat.rows(), stat.bytes()));
+    }
+    return table.toString();
+  }
+
+  public String json() {
+    StringBuilder json = new StringBuilder("{\"metrics\":[");
+    boolean first = true;
+    for (Stat stat : stats()) {
+      if (!first) json.append(',');
+      first = false;
+      json.append("{\"name\":\"").append(GraphExporter.jsonEscape(stat.name))
+          .append("\",\"calls\":").append(stat.calls())
+          .append(",\"errors\":").append(stat.errors())
+          .append(",\"totalNanos\":").append(stat.totalNanos())
+          .append(",\"p50Micros\":").append(stat.percentileMicros(0.5))
+          .append(",\"p99Micros\":").append(stat.percentileMicros(0.99))
+          .append(",\"rows\":").append(stat.rows())
+          .append(",\"bytes\":").append(stat.bytes()).append('}');
+    }
+    return json.append("]}").toString();
+  }
+}
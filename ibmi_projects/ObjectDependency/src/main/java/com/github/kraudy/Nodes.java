@@ -1,5 +1,45 @@
 package com.github.kraudy;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Interned node table: every LIB/NAME/*TYPE key gets a dense int id, so edges can be plain int arrays */
 public class Nodes {
-  private int id; //public
+  private final Map<String, Integer> ids;
+  private final List<String> keys;
+
+  public Nodes() {
+    this(16);
+  }
+
+  public Nodes(int expectedSize) {
+    this.ids = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+    this.keys = new ArrayList<>(expectedSize);
+  }
+
+  /* Returns the id of the key, adding it if it is new */
+  public int intern(String key) {
+    Integer id = ids.get(key);
+    if (id != null) return id;
+    int newId = keys.size();
+    ids.put(key, newId);
+    keys.add(key);
+    return newId;
+  }
+
+  /* Returns the id of the key or -1 if it is not in the table */
+  public int id(String key) {
+    Integer id = ids.get(key);
+    return id != null ? id : -1;
+  }
+
+  public String key(int id) {
+    return keys.get(id);
+  }
+
+  public int size() {
+    return keys.size();
+  }
 }
@@ -2,23 +2,37 @@ package com.github.kraudy;
 
 import java.beans.PropertyVetoException;
 import java.io.File;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -46,6 +60,12 @@ public class ObjectDependency implements Runnable { // ObjectReferencer
   private final Connection connection;
   private final User currentUser;
   private Map<String, Set<String>> graph = new HashMap<>(); // objectKey -> dependsOn
+  private final Map<String, String> changeStamps = new HashMap<>(); // objectKey -> OBJECT_STATISTICS change timestamp
+  private final Map<String, EdgeType> edgeTypes = new HashMap<>(); // edgeKey -> type, REFERENCE edges are not stored
+  private GraphSnapshot snapshot; // Previous run, if --snapshot was given
+  private DependencySource source; // Live catalog unless one was given (tests, benchmarks)
+  private final Metrics metrics = new Metrics(); // Always recorded, printed with --metrics
+  private final Map<ObjectType, Metrics.Stat> resolverStats = new EnumMap<>(ObjectType.class);
   //private List<Nodes> nodes;
 
   enum SysCmd { CHGLIBL, DSPPGMREF, DSPOBJD, DSPDBR, DSPFD, DSPPGM, SYSTABLEDEP, SYSVIEWDEP, SYSIXDEP, SYSROUTINEDEP, PROGRAM_INFO } //TODO: I think DSPFD and DSPPGM can be done by sql
@@ -56,14 +76,55 @@ public class ObjectDependency implements Runnable { // ObjectReferencer
 
   enum ObjectType { PGM, SRVPGM, MODULE, TABLE, LF, VIEW, ALIAS, PROCEDURE, FUNCTION } // Add more as needed
 
+  // Why an edge exists. Only ILE bindings are typed, everything else (DSPPGMREF, catalog, DSPDBR) is a REFERENCE
+  enum EdgeType { REFERENCE, BOUND_SRVPGM, BOUND_MODULE }
+
+  static String edgeKey(String from, String to) {
+    return from + "\t" + to;
+  }
+
+  // Object found by getObjects that still needs its dependencies resolved
+  static class DepObject {
+    final String library;
+    final String name;
+    final String type; // *PGM, *FILE, etc.
+    final String attribute;
+    final ObjectType objectType;
+    final String changed; // Change timestamp, null if unknown
+
+    DepObject(String library, String name, String type, String attribute, ObjectType objectType, String changed) {
+      this.library = library;
+      this.name = name;
+      this.type = type;
+      this.attribute = attribute;
+      this.objectType = objectType;
+      this.changed = changed;
+    }
+
+    String key() {
+      return library + "/" + name + "/" + type;
+    }
+  }
+
+  // What scanLibrary found in one library, merged into the graph by the calling thread
+  static class LibraryScan {
+    final String library;
+    final List<DepObject> objects = new ArrayList<>();
+    final List<DepObject> stale = new ArrayList<>(); // New or changed since the snapshot
+    Map<String, Set<String>> programRefs; // objectKey -> dependsOn from the bulk DSPPGMREF, null if not harvested
+    final Map<SysCmd, Map<String, Set<String>>> catalogRefs = new EnumMap<>(SysCmd.class); // Catalog view -> objName -> dependsOn
+    Map<String, Set<String>> fileRelations; // Dependent file key -> physical files of the library, from DSPDBR. May be in other libraries
+    Map<String, Map<String, EdgeType>> bindings; // objectKey -> bound service programs and modules, null if not harvested
+
+    LibraryScan(String library) {
+      this.library = library;
+    }
+  }
+
   // Similar to typeToCmdMap in ObjectCompiler: Map ObjectType to SysCmd for dependency fetching
   private static final Map<ObjectType, SysCmd> objTypeToDepCmdMap = new EnumMap<>(ObjectType.class);
   private final Map<SysCmd, Supplier<String>> valueSuppliers = new EnumMap<>(SysCmd.class);
 
-  // Lambda mapping like Resolver's valueSuppliers: Map ObjectType to a function that resolves deps
-  // Function inputs: String[] {library, objName, objAttr} -> Set<depKey>
-  private final Map<ObjectType, Function<String[], Set<String>>> depResolvers = new EnumMap<>(ObjectType.class);
-
   static {
     /* These work directly on the object, no need for source type */
     objTypeToDepCmdMap.put(ObjectType.PGM, SysCmd.DSPPGMREF); 
@@ -72,7 +133,7 @@ public class ObjectDependency implements Runnable { // ObjectReferencer
     objTypeToDepCmdMap.put(ObjectType.TABLE, SysCmd.SYSTABLEDEP);
     objTypeToDepCmdMap.put(ObjectType.LF, SysCmd.SYSTABLEDEP);
     objTypeToDepCmdMap.put(ObjectType.VIEW, SysCmd.SYSVIEWDEP);
-    objTypeToDepCmdMap.put(ObjectType.ALIAS, SysCmd.SYSIXDEP);  // Or SYSTABLEDEP if alias over table. Could make it a list.
+    objTypeToDepCmdMap.put(ObjectType.ALIAS, SysCmd.SYSTABLEDEP);  // Same as its resolver (getTableDeps). SYSIXDEP could be added for indexes
     objTypeToDepCmdMap.put(ObjectType.PROCEDURE, SysCmd.SYSROUTINEDEP);
     objTypeToDepCmdMap.put(ObjectType.FUNCTION, SysCmd.SYSROUTINEDEP);
 
@@ -100,6 +161,17 @@ public class ObjectDependency implements Runnable { // ObjectReferencer
     }
   }
 
+  static class ExportFormatConverter implements CommandLine.ITypeConverter<GraphExporter.Format> {
+    @Override
+    public GraphExporter.Format convert(String value) throws Exception {
+      try {
+        return GraphExporter.Format.valueOf(value.trim().toUpperCase());
+      } catch (IllegalArgumentException e) {
+        throw new CommandLine.TypeConversionException("Invalid export format: '" + value + "'. Must be one of: " + Arrays.toString(GraphExporter.Format.values()));
+      }
+    }
+  }
+
   static class SourceTypeConverter implements CommandLine.ITypeConverter<SourceType> {
     @Override
     public SourceType convert(String value) throws Exception {
@@ -123,7 +195,7 @@ public class ObjectDependency implements Runnable { // ObjectReferencer
   @Option(names = "--source-type", description = "Source type (e.g., RPGLE, CLLE)", converter = SourceTypeConverter.class)
   private SourceType sourceType;
 
-  @Option(names = "-o", description = "Output")
+  @Option(names = "-o", description = "Library of the command outfiles (default: QTEMP, required with --parallelism > 1)")
   private String outLibrary = "QTEMP";
 
   @Option(names = "-x", description = "Debug")
@@ -132,6 +204,44 @@ public class ObjectDependency implements Runnable { // ObjectReferencer
   @Option(names = "-v", description = "Verbose output")
   private boolean verbose = false;
 
+  @Option(names = "--per-object", description = "Resolve each object on its own instead of one DSPPGMREF and one query per catalog view per library")
+  private boolean perObject = false;
+
+  @Option(names = "--parallelism", description = "Number of host sessions used to scan libraries and resolve dependencies (default: 1)")
+  private int parallelism = 1;
+
+  @Option(names = "--snapshot", description = "Graph snapshot file. Unchanged objects are reused from it and it is rewritten after a library scan")
+  private File snapshotFile;
+
+  @Option(names = "--impacted-by", description = "Only list what must be rebuilt if LIB/NAME/TYPE changes (e.g., MYLIB/CUSTMAST/FILE)",
+          converter = objectNameConverter.class)
+  private String impactedBy;
+
+  @Option(names = "--export", description = "Write the whole graph as JSON, DOT or GRAPHML", converter = ExportFormatConverter.class)
+  private GraphExporter.Format exportFormat;
+
+  @Option(names = "--out", description = "File for --export (default: stdout)")
+  private File exportFile;
+
+  @Option(names = "--daemon", description = "Keep the graph in memory, poll for changed objects and answer queries over HTTP")
+  private boolean daemon = false;
+
+  @Option(names = "--port", description = "Local HTTP port for --daemon (default: 8765, 0 picks a free one)")
+  private int port = 8765;
+
+  @Option(names = "--poll", description = "Seconds between change polls in --daemon mode (default: 30)")
+  private int pollSeconds = 30;
+
+  @Option(names = "--compile", description = "Rebuild in dependency order with the commands of this file, one per line: LIB/NAME/TYPE<tab>CL command. " +
+          "Uses --parallelism sessions; with --impacted-by only the impacted objects are rebuilt")
+  private File compileFile;
+
+  @Option(names = "--metrics", description = "Print call counts, latency, rows and bytes per host interaction and resolver")
+  private boolean printMetrics = false;
+
+  @Option(names = "--metrics-out", description = "Write the metrics as JSON to this file")
+  private File metricsFile;
+
   @Option(names = "--json", description = "Output as JSON")
   private boolean jsonOutput = false;
 
@@ -145,18 +255,37 @@ public class ObjectDependency implements Runnable { // ObjectReferencer
     }
     libraryList = libraryList.stream().map(String::trim).map(String::toUpperCase).distinct().collect(Collectors.toList());
     //TODO: Add lib validation
-    if (debug) System.out.println("Library list: " + String.join(" ", libraryList));
+    if (debug) log().println("Library list: " + String.join(" ", libraryList));
+
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("--parallelism must be at least 1.");
+    }
+    // The outfiles have fixed names: only QTEMP keeps the sessions from replacing each other's members
+    if (parallelism > 1 && !outLibrary.trim().equalsIgnoreCase("QTEMP")) {
+      throw new IllegalArgumentException("-o must be QTEMP when --parallelism is greater than 1.");
+    }
+    if (daemon && pollSeconds < 1) {
+      throw new IllegalArgumentException("--poll must be at least 1 second.");
+    }
 
-    String commandStr = "CHGLIBL LIBL(" + String.join(" ", libraryList) + ")";
     try (Statement cmdStmt = connection.createStatement()) { //TODO: Use this to create the UDF function in QTEMP
-      cmdStmt.execute("CALL QSYS2.QCMDEXC('" + commandStr + "')");
+      cmdStmt.execute("CALL QSYS2.QCMDEXC('" + libraryListCommand() + "')");
     } catch (SQLException e) {
-      System.out.println("Could not change library list to " + libraryList + ": Failed");
+      log().println("Could not change library list to " + libraryList + ": Failed");
       e.printStackTrace();
       return;
     }
     
-    this.dependencies(libraryList.get(0)); // First library for scan
+    this.dependencies(); // Every library in the list is scanned
+  }
+
+  // Progress and diagnostics. On stderr when stdout carries an export, so the export can be piped as is
+  private PrintStream log() {
+    return exportFormat != null && exportFile == null && !daemon ? System.err : System.out;
+  }
+
+  private String libraryListCommand() {
+    return "CHGLIBL LIBL(" + String.join(" ", libraryList) + ")";
   }
   // TODO: Maybe use json to describe the depencency context
   // TODO: Add librar list as param and change it with CHGLIBL, then revet it.
@@ -180,324 +309,613 @@ public class ObjectDependency implements Runnable { // ObjectReferencer
     this.currentUser = new User(system, system.getUserId());
     this.currentUser.loadUserInformation();
 
-    initDepResolvers();  // Initialize lambdas like initSuppliers in Resolver
+    initResolverStats();
+  }
+
+  // Off system: objects and dependencies come only from source
+  ObjectDependency(DependencySource source) {
+    this.system = null;
+    this.connection = null;
+    this.currentUser = null;
+    this.source = source;
+
+    initResolverStats();
   }
 
-  private void initDepResolvers() {
-    // Lambdas/Method refs like suppliers in Resolver
-    depResolvers.put(ObjectType.PGM, this::getProgramDeps);
-    depResolvers.put(ObjectType.SRVPGM, this::getProgramDeps);  // Same as PGM (DSPPGMREF works)
-    depResolvers.put(ObjectType.MODULE, this::getProgramDeps);
-    depResolvers.put(ObjectType.TABLE, this::getTableDeps);
-    depResolvers.put(ObjectType.LF, this::getTableDeps);  // Logical depends on physical
-    depResolvers.put(ObjectType.VIEW, this::getViewDeps);
-    depResolvers.put(ObjectType.ALIAS, this::getTableDeps);  // Alias depends on base
-    depResolvers.put(ObjectType.PROCEDURE, this::getRoutineDeps);
-    depResolvers.put(ObjectType.FUNCTION, this::getRoutineDeps);
+  // One Stat per resolver, filled up front so the resolving threads only read the map
+  private void initResolverStats() {
+    for (ObjectType type : ObjectType.values()) {
+      resolverStats.put(type, metrics.stat("resolver " + type));
+    }
   }
 
-  private void dependencies(String library){
+  void dependencies(){
     try {
-      getObjects(library);
-      // After building graph, toposort it
-      List<String> ordered = topologicalSort(graph);
-      System.out.println("Topological Order: " + ordered);
+      loadSnapshot();
+      if (source == null) {
+        source = new Db2DependencySource(system, connection, parallelism, outLibrary, verbose, debug, metrics, log());
+      }
+      source.open(libraryList);
+      if (getObjects(libraryList)) saveSnapshot(); // Never a partial graph
+      if (daemon) {
+        serve();
+        return;
+      }
+      if (exportFormat != null) {
+        exportGraph();
+        if (exportFile == null) return; // stdout only carries the export
+      }
+      // After building graph, toposort it. Kahn's algorithm, run over the interned CSR copy of the graph
+      // TODO:  Use a more formal graph lib like JGraphT 
+      CompactGraph compact = CompactGraph.of(graph);
+      if (compileFile != null) {
+        compile(compact);
+        return;
+      }
+      if (impactedBy != null) {
+        printImpacted(compact, impactedBy);
+        return;
+      }
+      if (jsonOutput) {
+        System.out.println(orderJson(compact));
+      } else {
+        System.out.println("Build Order: " + buildOrder(compact));
+        printWaves(compact.buildWaves());
+        printCycles(compact.cycles());
+      }
 
     } catch (Exception e) {
       e.printStackTrace();
     } finally{
+      reportMetrics();
+      if (source != null) source.close();
       cleanup();
     }
   }
 
-  //TODO: Overload this thing to scan the whole library or specific programs
-  private void getObjects(String library) throws SQLException {
-    StringBuilder whereClause = new StringBuilder("");
-    // Build whereClause similar to your code, but use shared enums
-    // ...
-    // (Omit for brevity; keep your existing logic, but reference ObjectType enums)
-    if (objectName != null && objectType != null) {
-      whereClause.append(" WHERE OBJNAME = '" + objectName + "' AND ");
-      // Already sanitized in run() TODO: Use only objectName
-      switch (objectType) {
-        case PGM:
-            whereClause.append(" OBJTYPE = '*PGM'");
-            break;
-        case SRVPGM:
-            whereClause.append(" OBJTYPE = '*SRVPGM'");
-            break;
-        case MODULE:
-            whereClause.append(" OBJTYPE = '*MODULE'");
-            break;
-        case TABLE:
-            whereClause.append(" OBJTYPE = '*FILE' AND SQL_OBJECT_TYPE = 'TABLE'");
-            break;
-        case LF:
-            whereClause.append(" OBJTYPE = '*FILE' AND OBJATTRIBUTE = 'LF'");
-            break;
-        case VIEW:
-            whereClause.append(" OBJTYPE = '*FILE' AND SQL_OBJECT_TYPE = 'VIEW'");
-            break;
-        case ALIAS:
-            whereClause.append(" OBJTYPE = '*FILE' AND SQL_OBJECT_TYPE = 'ALIAS'");
-            break;
-        case PROCEDURE:
-            // Procedures are special: Primarily identified by SQL_OBJECT_TYPE; OBJTYPE often '*PGM' or '*SRVPGM' but not always enforced
-            whereClause.append(" SQL_OBJECT_TYPE = 'PROCEDURE'");
-            break;
-        case FUNCTION:
-            // Functions typically '*PGM' with SQL_OBJECT_TYPE
-            whereClause.append(" OBJTYPE = '*PGM' AND SQL_OBJECT_TYPE = 'FUNCTION'");
-            break;
-        default:
-            throw new IllegalArgumentException("Unsupported object type: " + objectType);
-      }
-    }
-    try(Statement objsStmt = connection.createStatement();
-        ResultSet rs = objsStmt.executeQuery(
-              "WITH SourcePf (SourcePf) AS ( " + 
-                  "SELECT TABLE_NAME AS SourcePf " +
-                  "FROM QSYS2.SYSTABLES " + 
-                  "WHERE TABLE_SCHEMA = '" + library + "' " +
-                  "AND FILE_TYPE = 'S' " +
-              ") " +
-              "SELECT " +
-                  "CAST(OBJNAME AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS object_name, " +
-                  "CAST(OBJTYPE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS object_type, " +
-                  "CAST(OBJTEXT AS VARCHAR(50) CCSID " + INVARIANT_CCSID + ") AS text_description, " + 
-                  "CAST((CASE WHEN SQL_OBJECT_TYPE IS NOT NULL THEN SQL_OBJECT_TYPE ELSE OBJATTRIBUTE END) AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") As attribute " +
-              "FROM TABLE(QSYS2.OBJECT_STATISTICS('" + library + "', '*ALL')) " +
-              "EXCEPTION JOIN SourcePf " +
-              "ON (SourcePf.SourcePf = OBJNAME AND " +
-                  "OBJTYPE = '*FILE') " +
-              whereClause.toString())){
-      //TODO: Maybe move this out to just use return in the recursion
-      while(rs.next()){
-        String objName = rs.getString("object_name");
-        String objTypeStr = rs.getString("object_type");
-        String objAttr = rs.getString("attribute");
-        String objDesc = rs.getString("text_description");
-
-        // Log for debugging
-        if (verbose) {
-            System.out.println("Processing: Library=" + library + ", Object=" + objName + ", Type=" + objTypeStr + ", Attribute=" + (objAttr != null ? objAttr : "NULL"));
-        }
+  // Scan and resolve only, no snapshot or output. Used to load test a DependencySource
+  Map<String, Set<String>> buildGraph(List<String> libraries, int parallelism, boolean perObject) throws SQLException {
+    this.libraryList = libraries;
+    this.parallelism = parallelism;
+    this.perObject = perObject;
+    this.graph = new HashMap<>();
+    source.open(libraries);
+    getObjects(libraries);
+    return graph;
+  }
 
-        // Determine ObjectType based on objTypeStr and objAttr
-        ObjectType objTypeEnum;
-        if (objTypeStr.equals("*FILE")) {
-          if (objAttr == null) {
-            if (verbose) {
-              System.out.println("Skipping *FILE with null attribute: " + objName);
-            }
-            continue;
-          }
-          // For files, use objAttr (which is OBJATTRIBUTE or SQL_OBJECT_TYPE)
-          switch (objAttr) {
-            case "TABLE":
-              objTypeEnum = ObjectType.TABLE;
-              break;
-            case "LF":
-              objTypeEnum = ObjectType.LF;
-              break;
-            case "VIEW":
-              objTypeEnum = ObjectType.VIEW;
-              break;
-            case "ALIAS":
-              objTypeEnum = ObjectType.ALIAS;
-              break;
-            default:
-              // Skip or handle unsupported file subtypes (e.g., log "Unsupported file attribute: " + objAttr)
-              if (verbose) {
-                System.out.println("Skipping unsupported *FILE with attribute: " + objAttr);
-              }
-              continue;  // Or throw if you want strict enforcement
-          }
-        } else if (objAttr.equals("PROCEDURE") || objAttr.equals("FUNCTION")) {
-          // Override for SQL routines (may appear as *PGM/*SRVPGM)
-          objTypeEnum = objAttr.equals("PROCEDURE") ? ObjectType.PROCEDURE : ObjectType.FUNCTION;
-        } else {
-          // For non-files (e.g., *PGM, *SRVPGM, *MODULE), use objTypeStr
-          try {
-            objTypeEnum = ObjectType.valueOf(objTypeStr.replace("*", "").trim());
-          } catch (IllegalArgumentException e) {
-            if (verbose) {
-              System.out.println("Skipping unsupported object type: " + objTypeStr);
-            }
-            continue;
-          }
+  Map<String, Set<String>> graph() {
+    return graph;
+  }
+
+  /*
+   * Daemon mode: the graph stays resident and is served over HTTP (see DependencyServer). Every poll lists the
+   * libraries again, which is one OBJECT_STATISTICS query each; the current graph acts as the snapshot, so only
+   * new or changed objects are resolved and the served graph is only swapped when a change stamp moved.
+   */
+  private void serve() throws IOException {
+    DependencyServer server = new DependencyServer(port, metrics);
+    server.publish(CompactGraph.of(graph));
+    server.start();
+    System.out.println("Serving " + graph.size() + " objects on http://localhost:" + server.port() +
+                       " (/impacted, /deps, /order, /status, /metrics), polling every " + pollSeconds + " s");
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        Thread.sleep(pollSeconds * 1000L);
+        long start = System.nanoTime();
+        try {
+          if (!refresh()) continue;
+        } catch (SQLException | RuntimeException e) {
+          // The daemon outlives a dropped connection or a failed query, the next poll tries again
+          System.out.println("Poll failed, still serving the last good graph: " + e.getMessage());
+          if (verbose) e.printStackTrace();
+          continue;
         }
+        server.publish(CompactGraph.of(graph));
+        saveSnapshot();
+        System.out.println("Refreshed graph to " + graph.size() + " objects in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      server.stop();
+    }
+  }
 
+  /*
+   * One daemon poll, with the current graph as the snapshot. True if a change stamp moved and every library
+   * was scanned; if any scan failed the graph of the last good refresh is put back, never a partial one.
+   */
+  boolean refresh() throws SQLException {
+    GraphSnapshot previous = new GraphSnapshot(graph, new HashMap<>(changeStamps), new HashMap<>(edgeTypes));
+    snapshot = previous;
+    graph = new HashMap<>();
+    changeStamps.clear();
+    edgeTypes.clear();
+    boolean complete = false;
+    try {
+      complete = getObjects(libraryList);
+    } finally {
+      if (!complete) {
+        graph = previous.graph();
+        changeStamps.clear();
+        changeStamps.putAll(previous.changeStamps());
+        edgeTypes.clear();
+        edgeTypes.putAll(previous.edgeTypes());
+      }
+    }
+    if (!complete) {
+      System.out.println("Poll incomplete, still serving the last good graph");
+      return false;
+    }
+    return !changeStamps.equals(previous.changeStamps());
+  }
 
-        //ObjectType objTypeEnum = ObjectType.valueOf(objTypeStr.replace("*", "").trim());  // Map "*PGM" to PGM
-        String objKey = library + "/" + objName + "/" + objTypeStr;
-        graph.putIfAbsent(objKey, new HashSet<>());
-
-        System.out.println("Library: " + library + ", Object: " + objName + ", Type: " + objTypeStr + ", Attribute: " + objAttr);
-        
-        // Use the resolver map/lambda
-        Function<String[], Set<String>> resolver = depResolvers.getOrDefault(objTypeEnum, params -> new HashSet<>());
-        Set<String> deps = resolver.apply(new String[]{library, objName, objAttr});
-        graph.get(objKey).addAll(deps);
-        deps.forEach(depKey -> graph.putIfAbsent(depKey, new HashSet<>()));  // Ensure nodes exist
-      }
-    }
-  }
-
-  // Example resolver method (used via lambda)
-  private Set<String> getProgramDeps(String[] args) {
-    String library = args[0], objName = args[1], objAttr = args[2];
-    Set<String> deps = new HashSet<>();
-    String outfileName = "PGMREFS";
-    String commandStr = "DSPPGMREF PGM(" + library + "/" + objName + ") OUTPUT(*OUTFILE) OBJTYPE(*ALL) " +
-                        "OUTFILE(" + outLibrary + "/" + outfileName + ") OUTMBR(*FIRST *REPLACE)";
-    try (Statement cmdStmt = connection.createStatement()) {
-      cmdStmt.execute("CALL QSYS2.QCMDEXC('" + commandStr + "')");
-      try (ResultSet rsDeps = cmdStmt.executeQuery(
-          "SELECT CAST(WHFNAM AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHFNAM, " +
-          "CAST(WHLNAM AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS WHLNAM, " +
-          "CAST(WHOTYP AS VARCHAR(8) CCSID " + INVARIANT_CCSID + ") AS WHOTYP " +
-          "FROM " + outLibrary + "." + outfileName)) {
-        while (rsDeps.next()) {
-          String depName = rsDeps.getString("WHFNAM").trim();
-          String depLib = rsDeps.getString("WHLNAM").trim();
-          String depType = rsDeps.getString("WHOTYP").trim();
-          if (depName.isEmpty() || depName.equals("*EXPR") || depLib.equals("*EXPR") || depLib.startsWith("Q")) {
-              continue;
-          }
-          depLib = resolveLibL(depLib, depName, depType);
-          String depKey = depLib + "/" + depName + "/" + depType;
-          deps.add(depKey);
-        }
+  /*
+   * Runs the compile commands over a pool of CommandCall sessions, each object as soon as its dependencies are built.
+   * Objects without a command are not compiled but still order the rest (e.g. a file between two programs).
+   */
+  private void compile(CompactGraph compact) throws Exception {
+    Map<String, String> commands = loadCompileCommands(compileFile);
+    Set<String> targets = new HashSet<>();
+    for (String key : new ArrayList<>(commands.keySet())) { // Keys may get the '*' of their type added
+      String found = findKey(compact, key);
+      if (found == null) {
+        System.out.println("Not in the dependency graph, not compiled: " + key);
+        continue;
       }
-    } catch (SQLException e) {
-        if (verbose) e.printStackTrace();
+      commands.put(found, commands.get(key));
+      targets.add(found);
+    }
+    if (impactedBy != null) {
+      String key = findKey(compact, impactedBy);
+      if (key == null) {
+        System.out.println("Object " + impactedBy + " is not in the dependency graph");
+        return;
+      }
+      Set<String> impacted = new HashSet<>(compact.impactedBy(key));
+      impacted.add(key);
+      targets.retainAll(impacted);
+    }
+    if (targets.isEmpty()) {
+      System.out.println("Nothing to compile");
+      return;
+    }
+
+    List<CommandCallCompiler> sessions = new ArrayList<>();
+    try {
+      for (int i = 0; i < Math.min(parallelism, targets.size()); i++) {
+        sessions.add(new CommandCallCompiler(system, libraryListCommand(), commands, verbose));
+      }
+      CompileExecutor.Result result = new CompileExecutor(compact, targets, new ArrayList<>(sessions)).run();
+      for (Map.Entry<String, Exception> error : result.errors.entrySet()) {
+        System.out.println("Compile of " + error.getKey() + " threw, its session is dropped: " + error.getValue());
+        if (verbose) error.getValue().printStackTrace(System.out);
+      }
+      if (!result.failed.isEmpty()) System.out.println("Failed: " + result.failed);
+      if (!result.skipped.isEmpty()) System.out.println("Skipped, a dependency failed: " + result.skipped);
+      System.out.println(result.summary() + " with " + sessions.size() + " sessions");
+    } finally {
+      sessions.forEach(CommandCallCompiler::close);
     }
-    return deps;
   }
 
-  // Resolver for table/LF/alias (using SQL instead of command)
-  private Set<String> getTableDeps(String[] args) {
-    String library = args[0], objName = args[1];
-    Set<String> deps = new HashSet<>();
-    try (Statement stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(
-              "SELECT CAST(BASE_SCHEMA AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
-              "CAST(BASE_TABLE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName " +
-              "FROM QSYS2.SYSTABLEDEP WHERE DEPENDENT_SCHEMA = '" + library + "' AND DEPENDENT_TABLE = '" + objName + "'")) {
-      while (rs.next()) {
-        String depLib = rs.getString("depLib").trim();
-        String depName = rs.getString("depName").trim();
-        String depKey = depLib + "/" + depName + "/*FILE";
-        deps.add(depKey);
+  // LIB/NAME/TYPE<tab>command, blank lines and # comments are skipped
+  static Map<String, String> loadCompileCommands(File file) throws IOException {
+    Map<String, String> commands = new HashMap<>();
+    for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+      if (line.trim().isEmpty() || line.trim().startsWith("#")) continue;
+      int tab = line.indexOf('\t');
+      if (tab < 1 || line.substring(tab + 1).trim().isEmpty()) {
+        throw new IOException("Malformed compile command line: " + line);
       }
-    } catch (SQLException e) {
+      commands.put(line.substring(0, tab).trim().toUpperCase(), line.substring(tab + 1).trim());
+    }
+    return commands;
+  }
+
+  private void reportMetrics() {
+    if (printMetrics) {
+      log().print(metrics.table());
+    }
+    if (metricsFile == null) return;
+    try {
+      Files.write(metricsFile.toPath(), metrics.json().getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      log().println("Could not write metrics to " + metricsFile + ": Failed");
       if (verbose) e.printStackTrace();
     }
-    return deps;
   }
 
-  // Similar for views
-  private Set<String> getViewDeps(String[] args) {
-    String library = args[0], objName = args[1];
-    Set<String> deps = new HashSet<>();
-    try (Statement stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(
-                "SELECT CAST(VIEW_SCHEMA AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
-                "CAST(VIEW_NAME AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName " +
-                "FROM QSYS2.SYSVIEWDEP WHERE BASE_SCHEMA = '" + library + "' AND BASE_TABLE = '" + objName + "'")) {  // Note: Inverted for dependents, adjust if needed for bases
-      while (rs.next()) {
-          String depLib = rs.getString("depLib").trim();
-          String depName = rs.getString("depName").trim();
-          String depKey = depLib + "/" + depName + "/*FILE";
-          deps.add(depKey);
-      }
-    } catch (SQLException e) {
+  // Same for a single --obj run
+  Map<String, Set<String>> buildGraph(List<String> libraries, String objectName, ObjectType objectType) throws SQLException {
+    this.objectName = objectName;
+    this.objectType = objectType;
+    return buildGraph(libraries, 1, false);
+  }
+
+  // Snapshots only describe whole libraries, a single --obj run neither reads nor writes them
+  private void loadSnapshot() {
+    if (snapshotFile == null) return;
+    if (objectName != null) {
+      log().println("Ignoring --snapshot for a single object run");
+      snapshotFile = null;
+      return;
+    }
+    if (!snapshotFile.exists()) return;
+    try {
+      snapshot = GraphSnapshot.load(snapshotFile);
+      if (debug) log().println("Loaded snapshot with " + snapshot.graph().size() + " nodes from " + snapshotFile);
+    } catch (IOException e) {
+      log().println("Could not load snapshot " + snapshotFile + ": doing a full scan");
       if (verbose) e.printStackTrace();
     }
-    return deps;
   }
 
-  // For procedures/functions
-  private Set<String> getRoutineDeps(String[] args) {
-    String library = args[0], objName = args[1];
-    Set<String> deps = new HashSet<>();
-    try (Statement stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(
-            "SELECT CAST(DEPENDENT_SCHEMA AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depLib, " +
-            "CAST(DEPENDENT_ROUTINE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depName, " +
-            "CAST(DEPENDENT_ROUTINE_TYPE AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS depType " +
-            "FROM QSYS2.SYSROUTINEDEP WHERE ROUTINE_SCHEMA = '" + library + "' AND ROUTINE_NAME = '" + objName + "'")) {
-      while (rs.next()) {
-        String depLib = rs.getString("depLib").trim();
-        String depName = rs.getString("depName").trim();
-        String depType = rs.getString("depType").trim();  // e.g., PROCEDURE or FUNCTION
-        String depKey = depLib + "/" + depName + "/" + depType;
-        deps.add(depKey);
+  private void saveSnapshot() {
+    if (snapshotFile == null) return;
+    try {
+      new GraphSnapshot(graph, changeStamps, edgeTypes).save(snapshotFile);
+      if (debug) log().println("Saved snapshot with " + graph.size() + " nodes to " + snapshotFile);
+    } catch (IOException e) {
+      log().println("Could not save snapshot " + snapshotFile + ": Failed");
+      e.printStackTrace();
+    }
+  }
+
+  /*
+   * Scans every library as its own task (one session each when --parallelism > 1), then merges the
+   * per library results into one graph. Edges into other scanned libraries meet their nodes in the merge.
+   * False if a library could not be scanned: the graph is then missing that library.
+   */
+  private boolean getObjects(List<String> libraries) throws SQLException {
+    if (objectName != null) {
+      List<DepObject> roots = new ArrayList<>();
+      for (String library : libraries) {
+        roots.addAll(source.getObjects(library, objectName, objectType));
       }
-    } catch (SQLException e) {
-        if (verbose) e.printStackTrace();
+      resolveFrom(roots);
+      return true;
     }
-    return deps;
+    long start = System.nanoTime();
+    List<LibraryScan> scans = new ArrayList<>();
+    if (parallelism == 1 || libraries.size() == 1) {
+      for (String library : libraries) {
+        scans.add(scanLibrary(library));
+      }
+    } else {
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, libraries.size()));
+      try {
+        List<Future<LibraryScan>> futures = new ArrayList<>();
+        for (String library : libraries) {
+          futures.add(executor.submit(() -> scanLibrary(library)));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+          try {
+            scans.add(futures.get(i).get());
+          } catch (ExecutionException e) {
+            log().println("Could not scan library " + libraries.get(i) + ": Failed");
+            if (verbose) e.getCause().printStackTrace();
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    if (libraries.size() > 1) {
+      log().println("Scanned " + scans.size() + " libraries in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    List<DepObject> pending = new ArrayList<>();
+    for (LibraryScan scan : scans) {
+      mergeScan(scan, pending);
+    }
+    resolveDependencies(pending);
+    return scans.size() == libraries.size();
   }
 
-  // Helper for *LIBL resolution (used in resolvers)
-  private String resolveLibL(String depLib, String depName, String depType) {
-    if (!depLib.equals("*LIBL")) return depLib;
-    String objdOutfile = "OBJD";
-    String resolveCmd = "DSPOBJD OBJ(*LIBL/" + depName + ") OBJTYPE(" + depType + ") " +
-                        "OUTPUT(*OUTFILE) OUTFILE(" + outLibrary + "/" + objdOutfile + ") OUTMBR(*FIRST *REPLACE)";
-    try (Statement stmt = connection.createStatement()) {
-      stmt.execute("CALL QSYS2.QCMDEXC('" + resolveCmd + "')");
-      try (ResultSet rs = stmt.executeQuery(
-          "SELECT CAST(ODLBNM AS VARCHAR(10) CCSID " + INVARIANT_CCSID + ") AS ODLBNM " +
-          "FROM " + outLibrary + "." + objdOutfile)) {
-        if (rs.next()) {
-          return rs.getString("ODLBNM").trim();
+  /*
+   * --obj: start at the requested object and resolve only what it can reach, one frontier level at a time.
+   * A level costs a few round trips: one catalog query per library and view for the SQL objects, the programs'
+   * DSPPGMREF spread over the sessions, and one OBJECT_STATISTICS per library to describe the next level.
+   * Objects in system libraries are kept as leaves and never expanded.
+   */
+  private void resolveFrom(List<DepObject> roots) throws SQLException {
+    long start = System.nanoTime();
+    Set<String> seen = new HashSet<>();
+    List<DepObject> frontier = roots;
+    int levels = 0;
+    for (DepObject obj : roots) {
+      seen.add(obj.key());
+    }
+    while (!frontier.isEmpty()) {
+      levels++;
+      List<DepObject> programs = new ArrayList<>();
+      List<DepObject> catalog = new ArrayList<>();
+      for (DepObject obj : frontier) {
+        graph.putIfAbsent(obj.key(), new HashSet<>());
+        if (obj.changed != null) changeStamps.put(obj.key(), obj.changed);
+        if (objTypeToDepCmdMap.get(obj.objectType) == SysCmd.DSPPGMREF) programs.add(obj);
+        else catalog.add(obj);
+      }
+      resolveDependencies(programs);
+      if (!catalog.isEmpty()) source.getDeps(catalog).forEach(this::addDeps);
+
+      Set<String> next = new HashSet<>();
+      for (DepObject obj : frontier) {
+        for (String dep : graph.get(obj.key())) {
+          if (seen.add(dep) && !isSystemObject(dep)) next.add(dep);
         }
       }
-    } catch (SQLException e) {
-        if (verbose) e.printStackTrace();
+      if (debug) log().println("Level " + levels + ": " + frontier.size() + " objects resolved, " + next.size() + " to describe");
+      frontier = next.isEmpty() ? new ArrayList<>() : source.describe(next);
     }
-    return depLib;  // Fallback
+    log().println("Resolved " + graph.size() + " reachable objects in " + levels + " levels, " +
+                       (System.nanoTime() - start) / 1_000_000 + " ms");
+  }
+
+  // QSYS, QGPL, QSYS2, SYSIBM...: never expanded, same as DSPPGMREF entries from Q libraries being skipped
+  static boolean isSystemObject(String objKey) {
+    return objKey.startsWith("Q") || objKey.startsWith("SYSIBM/");
   }
 
-  // Kahn's algorithm (assumes no cycles; add detection if needed)
-  // TODO:  Use a more formal graph lib like JGraphT 
-  private List<String> topologicalSort(Map<String, Set<String>> graph) {
-    Map<String, Integer> indegree = new HashMap<>();
-    for (String node : graph.keySet()) {
-      indegree.put(node, 0);
+  private void mergeScan(LibraryScan scan, List<DepObject> pending) {
+    for (DepObject obj : scan.objects) {
+      graph.putIfAbsent(obj.key(), new HashSet<>());
+      if (obj.changed != null) changeStamps.put(obj.key(), obj.changed);
     }
-    for (Set<String> deps : graph.values()) {
-      for (String dep : deps) {
-        indegree.put(dep, indegree.getOrDefault(dep, 0) + 1);
+
+    // Objects not changed since the snapshot keep their edges, only new or changed ones are resolved again.
+    // Deleted objects are simply not scanned, so they drop out of the new graph.
+    if (snapshot != null) {
+      for (DepObject obj : scan.objects) {
+        if (!snapshot.isCurrent(obj.key(), obj.changed)) continue;
+        addDeps(obj.key(), snapshot.dependsOn(obj.key()));
+        for (String dep : snapshot.dependsOn(obj.key())) {
+          EdgeType type = snapshot.edgeType(obj.key(), dep);
+          if (type != EdgeType.REFERENCE) edgeTypes.put(edgeKey(obj.key(), dep), type);
+        }
       }
+      long deleted = snapshot.changeStamps().keySet().stream()
+          .filter(key -> key.startsWith(scan.library + "/") && !changeStamps.containsKey(key)).count();
+      log().println("Snapshot " + scan.library + ": " + (scan.objects.size() - scan.stale.size()) + " objects reused, " +
+                         scan.stale.size() + " new or changed, " + deleted + " deleted");
     }
 
-    Queue<String> queue = new LinkedList<>();
-    for (Map.Entry<String, Integer> entry : indegree.entrySet()) {
-      if (entry.getValue() == 0) {
-        queue.add(entry.getKey());
+    for (DepObject obj : scan.stale) {
+      SysCmd cmd = objTypeToDepCmdMap.get(obj.objectType);
+      // Bound service programs and modules come typed, on top of whatever DSPPGMREF reports
+      Map<String, EdgeType> bound = scan.bindings != null ? scan.bindings.get(obj.key()) : null;
+      if (bound != null) {
+        addDeps(obj.key(), bound.keySet());
+        bound.forEach((dep, type) -> edgeTypes.put(edgeKey(obj.key(), dep), type));
       }
+      if (scan.programRefs != null && cmd == SysCmd.DSPPGMREF) {
+        addDeps(obj.key(), scan.programRefs.getOrDefault(obj.key(), Collections.emptySet()));
+        continue;
+      }
+      if (scan.catalogRefs.containsKey(cmd)) {
+        addDeps(obj.key(), scan.catalogRefs.get(cmd).getOrDefault(obj.name, Collections.emptySet()));
+        continue;
+      }
+      pending.add(obj);
     }
 
-    List<String> order = new ArrayList<>();
-    while (!queue.isEmpty()) {
-      String node = queue.poll();
-      order.add(node);
-      for (String dep : graph.getOrDefault(node, new HashSet<>())) {
-        indegree.put(dep, indegree.get(dep) - 1);
-        if (indegree.get(dep) == 0) {
-          queue.add(dep);
+    // Logical files, indexes and views over the physical files of the library, wherever they live
+    if (scan.fileRelations != null) {
+      for (Map.Entry<String, Set<String>> relation : scan.fileRelations.entrySet()) {
+        graph.putIfAbsent(relation.getKey(), new HashSet<>());
+        addDeps(relation.getKey(), relation.getValue());
+      }
+    } else if (snapshot != null) {
+      // DSPDBR only runs when a file of the library changed. Dependents in libraries that are not scanned
+      // have no stamp of their own, so they keep their snapshot edges into the files still in the library
+      String prefix = scan.library + "/";
+      for (Map.Entry<String, Set<String>> node : snapshot.graph().entrySet()) {
+        String dependent = node.getKey();
+        if (libraryList.contains(dependent.substring(0, dependent.indexOf('/')))) continue;
+        for (String dep : node.getValue()) {
+          if (!dep.startsWith(prefix) || !changeStamps.containsKey(dep)) continue;
+          graph.putIfAbsent(dependent, new HashSet<>());
+          addDeps(dependent, Collections.singleton(dep));
         }
       }
     }
+  }
+
+  //TODO: Overload this thing to scan the whole library or specific programs
+  private LibraryScan scanLibrary(String library) throws SQLException {
+    LibraryScan scan = new LibraryScan(library);
+    for (DepObject obj : source.getObjects(library, objectName, objectType)) {
+      scan.objects.add(obj);
+      if (snapshot == null || !snapshot.isCurrent(obj.key(), obj.changed)) {
+        scan.stale.add(obj);
+      }
+    }
 
-    if (order.size() != graph.size()) {
-      throw new RuntimeException("Cycle detected in dependencies");
+    // Whole library scan: get every program reference with a single DSPPGMREF
+    if (objectName == null && !perObject && scan.stale.stream().anyMatch(obj -> objTypeToDepCmdMap.get(obj.objectType) == SysCmd.DSPPGMREF)) {
+      scan.programRefs = source.getLibraryProgramDeps(library);
+    }
+    // ILE bindings of every program and service program, from the binding catalog services
+    if (objectName == null && !perObject && scan.stale.stream().anyMatch(obj -> obj.objectType == ObjectType.PGM || obj.objectType == ObjectType.SRVPGM)) {
+      scan.bindings = source.getLibraryBindings(library);
     }
-    return order;  // Dependencies first
+    // Same for the SQL catalog: one query per view instead of one per object
+    if (objectName == null && !perObject) {
+      for (SysCmd cmd : new SysCmd[]{SysCmd.SYSTABLEDEP, SysCmd.SYSVIEWDEP, SysCmd.SYSROUTINEDEP}) {
+        if (scan.stale.stream().anyMatch(obj -> objTypeToDepCmdMap.get(obj.objectType) == cmd)) {
+          Map<String, Set<String>> refs = source.getLibraryCatalogDeps(library, cmd);
+          if (refs != null) scan.catalogRefs.put(cmd, refs);
+        }
+      }
+      // And one DSPDBR for the database relations of every physical file, SQL or DDS
+      if (scan.stale.stream().anyMatch(obj -> obj.type.equals("*FILE"))) {
+        scan.fileRelations = source.getLibraryFileRelations(library);
+      }
+    }
+    return scan;
+  }
+
+  private void addDeps(String objKey, Set<String> deps) {
+    graph.get(objKey).addAll(deps);
+    deps.forEach(depKey -> graph.putIfAbsent(depKey, new HashSet<>()));  // Ensure nodes exist
+  }
+
+
+  private Set<String> resolve(DepObject obj) {
+    Metrics.Stat stat = resolverStats.get(obj.objectType);
+    long start = System.nanoTime();
+    Set<String> deps = source.getDeps(obj);
+    stat.record(start, deps.size(), 0);
+    return deps;
+  }
+
+  /*
+   * Runs the resolvers of every pending object. With --parallelism > 1 the work is spread over that many threads
+   * (the Db2 source gives each call its own session, and -o is then QTEMP); results are merged into the graph only from this thread.
+   */
+  private void resolveDependencies(List<DepObject> pending) {
+    if (pending.isEmpty()) return;
+    long start = System.nanoTime();
+    int sessions = Math.min(parallelism, pending.size());
+
+    if (sessions == 1) {
+      for (DepObject obj : pending) {
+        addDeps(obj.key(), resolve(obj));
+      }
+    } else {
+      ExecutorService executor = Executors.newFixedThreadPool(sessions);
+      try {
+        CompletionService<Set<String>> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<Set<String>>, DepObject> submitted = new HashMap<>();
+        for (DepObject obj : pending) {
+          submitted.put(completion.submit(() -> resolve(obj)), obj);
+        }
+        for (int i = 0; i < submitted.size(); i++) {
+          Future<Set<String>> done = completion.take();
+          DepObject obj = submitted.get(done);
+          try {
+            addDeps(obj.key(), done.get());
+          } catch (ExecutionException e) {
+            log().println("Could not resolve dependencies of " + obj.key());
+            changeStamps.remove(obj.key()); // Not current in the snapshot, so the next run resolves it again
+            if (verbose) e.getCause().printStackTrace();
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+    log().println("Resolved " + pending.size() + " objects in " + elapsedMs + " ms (" +
+                       (pending.size() * 1000L / elapsedMs) + " objects/sec, " + sessions + " sessions)");
+  }
+
+  private void exportGraph() throws IOException {
+    if (exportFile == null) {
+      Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+      GraphExporter.of(exportFormat, out).export(graph, edgeTypes); // Flushed, System.out is left open
+      return;
+    }
+    try (Writer out = Files.newBufferedWriter(exportFile.toPath(), StandardCharsets.UTF_8)) {
+      GraphExporter.of(exportFormat, out).export(graph, edgeTypes);
+    }
+    System.out.println("Exported " + graph.size() + " nodes as " + exportFormat + " to " + exportFile);
+  }
+
+  // Inverse of the graph: the transitive dependents of an object, in rebuild order
+  private void printImpacted(CompactGraph compact, String objKey) {
+    long start = System.nanoTime();
+    objKey = findKey(compact, objKey);
+    if (objKey == null) {
+      System.out.println("Object " + impactedBy + " is not in the dependency graph");
+      return;
+    }
+    List<String> impacted = compact.impactedBy(objKey);
+    long elapsedUs = (System.nanoTime() - start) / 1000;
+
+    if (jsonOutput) {
+      StringBuilder json = new StringBuilder("{\"impactedBy\":\"").append(GraphExporter.jsonEscape(objKey)).append("\",\"impacted\":");
+      appendJsonArray(json, impacted);
+      System.out.println(json.append('}'));
+    } else {
+      System.out.println("Impacted by " + objKey + " (" + impacted.size() + "): " + impacted);
+      if (debug) System.out.println("Query took " + elapsedUs + " us over " + compact.size() + " nodes");
+    }
+  }
+
+  // The key as stored in the graph, the type may be given without '*'. Null if the object is not in the graph
+  static String findKey(CompactGraph compact, String objKey) {
+    if (objKey == null) return null;
+    if (compact.nodes().id(objKey) != -1) return objKey;
+    if (objKey.matches("[^/]+/[^/]+/\\*.*")) return null;
+    String typed = objKey.replaceFirst("^([^/]+/[^/]+/)", "$1*"); // MYLIB/CUSTMAST/FILE -> MYLIB/CUSTMAST/*FILE
+    return compact.nodes().id(typed) != -1 ? typed : null;
+  }
+
+  // Each wave only depends on earlier waves, so a build can compile a whole wave concurrently
+  private void printWaves(List<List<String>> waves) {
+    for (int i = 0; i < waves.size(); i++) {
+      System.out.println("Wave " + (i + 1) + " (" + waves.get(i).size() + "): " + waves.get(i));
+    }
+    System.out.println("Critical path: " + waves.size() + " waves, max width: " + maxWidth(waves) + " objects");
+  }
+
+  // Cycles don't stop the scan anymore, each one is built as a single unit
+  private void printCycles(List<List<String>> cycles) {
+    if (cycles.isEmpty()) return;
+    System.out.println("Cycles: " + cycles.size());
+    for (List<String> cycle : cycles) {
+      System.out.println("Cycle (" + cycle.size() + "): " + cycle);
+    }
+  }
+
+  private static int maxWidth(List<List<String>> waves) {
+    return waves.stream().mapToInt(List::size).max().orElse(0);
+  }
+
+  // topologicalSort puts dependents first (edges go to dependencies); reversed it is the order to build in, like the waves
+  static List<String> buildOrder(CompactGraph compact) {
+    List<String> order = compact.topologicalSort();
+    Collections.reverse(order);
+    return order;
+  }
+
+  static String orderJson(CompactGraph compact) {
+    List<String> ordered = buildOrder(compact);
+    List<List<String>> waves = compact.buildWaves();
+    List<List<String>> cycles = compact.cycles();
+    StringBuilder json = new StringBuilder("{\"order\":");
+    appendJsonArray(json, ordered);
+    json.append(",\"waves\":[");
+    for (int i = 0; i < waves.size(); i++) {
+      if (i > 0) json.append(',');
+      appendJsonArray(json, waves.get(i));
+    }
+    json.append("],\"criticalPath\":").append(waves.size())
+        .append(",\"maxWidth\":").append(maxWidth(waves)).append(",\"cycles\":[");
+    for (int i = 0; i < cycles.size(); i++) {
+      if (i > 0) json.append(',');
+      appendJsonArray(json, cycles.get(i));
+    }
+    json.append("]}");
+    return json.toString();
+  }
+
+  static void appendJsonArray(StringBuilder json, List<String> values) {
+    json.append('[');
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) json.append(',');
+      json.append('"').append(GraphExporter.jsonEscape(values.get(i))).append('"');
+    }
+    json.append(']');
   }
 
   private void cleanup(){
@@ -514,6 +932,10 @@ public class ObjectDependency implements Runnable { // ObjectReferencer
     }
   }
   public static void main( String... args ){
+    if (args.length > 0 && args[0].equals("diff")) { // Snapshots only, no system connection
+      GraphDiff.main(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
     AS400 system = null;
     ObjectDependency dependencies = null;
     try {
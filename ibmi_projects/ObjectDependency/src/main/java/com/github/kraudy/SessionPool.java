@@ -0,0 +1,70 @@
+package com.github.kraudy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.ibm.as400.access.AS400;
+import com.ibm.as400.access.AS400JDBCDataSource;
+
+/*
+ * Fixed set of JDBC sessions. Every connection is its own host job, so each one
+ * has its own QTEMP and the resolvers can write their outfiles without stepping on each other.
+ */
+public class SessionPool implements AutoCloseable {
+  private final List<Connection> sessions = new ArrayList<>();
+  private final BlockingQueue<Connection> idle;
+
+  /* initCommand is run through QCMDEXC on every new session (e.g., CHGLIBL) */
+  public SessionPool(AS400 system, int size, String initCommand) throws SQLException {
+    if (size < 1) throw new IllegalArgumentException("Session pool size must be at least 1");
+    this.idle = new ArrayBlockingQueue<>(size);
+    AS400JDBCDataSource dataSource = new AS400JDBCDataSource(system);
+    try {
+      for (int i = 0; i < size; i++) {
+        Connection session = dataSource.getConnection();
+        sessions.add(session);
+        session.setAutoCommit(true);
+        if (initCommand != null) {
+          try (Statement stmt = session.createStatement()) {
+            stmt.execute("CALL QSYS2.QCMDEXC('" + initCommand + "')");
+          }
+        }
+        idle.add(session);
+      }
+    } catch (SQLException e) {
+      close();
+      throw e;
+    }
+  }
+
+  public int size() {
+    return sessions.size();
+  }
+
+  /* Blocks until a session is free */
+  public Connection take() throws InterruptedException {
+    return idle.take();
+  }
+
+  public void release(Connection session) {
+    idle.offer(session);
+  }
+
+  @Override
+  public void close() {
+    for (Connection session : sessions) {
+      try {
+        if (!session.isClosed()) session.close();
+      } catch (SQLException e) {
+        e.printStackTrace();
+      }
+    }
+    sessions.clear();
+    idle.clear();
+  }
+}
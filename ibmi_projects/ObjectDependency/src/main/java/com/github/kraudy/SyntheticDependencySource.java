@@ -0,0 +1,167 @@
+package com.github.kraudy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import com.github.kraudy.ObjectDependency.DepObject;
+import com.github.kraudy.ObjectDependency.ObjectType;
+import com.github.kraudy.ObjectDependency.SysCmd;
+
+/*
+ * Made up catalog to build graphs without a system: every library has objectsPerLibrary objects named OBJ0..OBJn-1
+ * with a fixed mix of programs, service programs, modules, tables, views and procedures.
+ * Object i depends on fanOut objects with a higher number in the same library, so the graph is acyclic.
+ * The same seed always gives the same catalog. latencyMicros is added to every call to stand in for a host round trip.
+ */
+public class SyntheticDependencySource implements DependencySource {
+  // Object i gets MIX[i % MIX.length]: ObjectType, OBJTYPE, attribute
+  private static final Object[][] MIX = {
+    {ObjectType.PGM, "*PGM", "RPGLE"},
+    {ObjectType.PGM, "*PGM", "SQLRPGLE"},
+    {ObjectType.PGM, "*PGM", "CLLE"},
+    {ObjectType.PGM, "*PGM", "RPGLE"},
+    {ObjectType.SRVPGM, "*SRVPGM", "RPGLE"},
+    {ObjectType.MODULE, "*MODULE", "RPGLE"},
+    {ObjectType.TABLE, "*FILE", "TABLE"},
+    {ObjectType.TABLE, "*FILE", "TABLE"},
+    {ObjectType.VIEW, "*FILE", "VIEW"},
+    {ObjectType.PROCEDURE, "*PGM", "PROCEDURE"},
+  };
+  private static final String CHANGED = "2026-01-01 00:00:00.0";
+
+  private final int objectsPerLibrary;
+  private final int fanOut;
+  private final long seed;
+  private final long latencyMicros;
+
+  public SyntheticDependencySource(int objectsPerLibrary, int fanOut, long seed, long latencyMicros) {
+    this.objectsPerLibrary = objectsPerLibrary;
+    this.fanOut = fanOut;
+    this.seed = seed;
+    this.latencyMicros = latencyMicros;
+  }
+
+  @Override
+  public void open(List<String> libraryList) {
+  }
+
+  @Override
+  public void close() {
+  }
+
+  @Override
+  public List<DepObject> getObjects(String library, String objectName, ObjectType objectType) {
+    roundTrip();
+    List<DepObject> objects = new ArrayList<>();
+    for (int i = 0; i < objectsPerLibrary; i++) {
+      DepObject obj = object(library, i);
+      if (objectName != null && (!obj.name.equals(objectName) || obj.objectType != objectType)) continue;
+      objects.add(obj);
+    }
+    return objects;
+  }
+
+  @Override
+  public Map<String, Set<String>> getLibraryProgramDeps(String library) {
+    roundTrip();
+    Map<String, Set<String>> refs = new HashMap<>();
+    for (int i = 0; i < objectsPerLibrary; i++) {
+      DepObject obj = object(library, i);
+      if (cmd(obj) == SysCmd.DSPPGMREF) refs.put(obj.key(), deps(library, i));
+    }
+    return refs;
+  }
+
+  @Override
+  public Map<String, Set<String>> getLibraryCatalogDeps(String library, SysCmd cmd) {
+    roundTrip();
+    Map<String, Set<String>> refs = new HashMap<>();
+    for (int i = 0; i < objectsPerLibrary; i++) {
+      DepObject obj = object(library, i);
+      if (cmd(obj) == cmd) refs.put(obj.name, deps(library, i));
+    }
+    return refs;
+  }
+
+  @Override
+  public List<DepObject> describe(Collection<String> keys) {
+    roundTrip();
+    List<DepObject> objects = new ArrayList<>();
+    for (String key : keys) {
+      String[] parts = key.split("/", 3);
+      if (parts.length < 3 || !parts[1].startsWith("OBJ")) continue;
+      int i = Integer.parseInt(parts[1].substring(3));
+      if (i >= objectsPerLibrary) continue;
+      DepObject obj = object(parts[0], i);
+      if (obj.key().equals(key)) objects.add(obj);
+    }
+    return objects;
+  }
+
+  @Override
+  public Set<String> getDeps(DepObject obj) {
+    roundTrip();
+    int i = Integer.parseInt(obj.name.substring(3));
+    return deps(obj.library, i);
+  }
+
+  /* Like the Db2 source: one round trip for all the catalog objects, programs one each */
+  @Override
+  public Map<String, Set<String>> getDeps(List<DepObject> objects) {
+    Map<String, Set<String>> deps = new HashMap<>();
+    boolean batched = false;
+    for (DepObject obj : objects) {
+      if (cmd(obj) == SysCmd.DSPPGMREF) {
+        deps.put(obj.key(), getDeps(obj));
+        continue;
+      }
+      if (!batched) roundTrip();
+      batched = true;
+      deps.put(obj.key(), deps(obj.library, Integer.parseInt(obj.name.substring(3))));
+    }
+    return deps;
+  }
+
+  private static SysCmd cmd(DepObject obj) {
+    switch (obj.objectType) {
+      case PGM:
+      case SRVPGM:
+      case MODULE:
+        return SysCmd.DSPPGMREF;
+      case VIEW:
+        return SysCmd.SYSVIEWDEP;
+      case PROCEDURE:
+      case FUNCTION:
+        return SysCmd.SYSROUTINEDEP;
+      default:
+        return SysCmd.SYSTABLEDEP;
+    }
+  }
+
+  private static DepObject object(String library, int i) {
+    Object[] mix = MIX[i % MIX.length];
+    return new DepObject(library, "OBJ" + i, (String) mix[1], (String) mix[2], (ObjectType) mix[0], CHANGED);
+  }
+
+  private Set<String> deps(String library, int i) {
+    Set<String> deps = new HashSet<>();
+    if (i + 1 >= objectsPerLibrary) return deps;
+    Random random = new Random(seed * 31 + library.hashCode() * 1_000_003L + i); // Same deps on every call
+    for (int d = 0; d < fanOut; d++) {
+      deps.add(object(library, i + 1 + random.nextInt(objectsPerLibrary - i - 1)).key());
+    }
+    return deps;
+  }
+
+  private void roundTrip() {
+    if (latencyMicros > 0) LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+  }
+}
@@ -0,0 +1,109 @@
+package com.github.kraudy;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class CompactGraphTest {
+
+  static Map<String, Set<String>> graph(String... edges) {
+    Map<String, Set<String>> graph = new HashMap<>();
+    for (String edge : edges) {
+      String[] pair = edge.split("->");
+      graph.computeIfAbsent(pair[0], k -> new HashSet<>());
+      if (pair.length > 1) {
+        graph.get(pair[0]).add(pair[1]);
+        graph.computeIfAbsent(pair[1], k -> new HashSet<>());
+      }
+    }
+    return graph;
+  }
+
+  @Test
+  void sortPutsObjectsBeforeTheirDependencies() {
+    Map<String, Set<String>> graph = graph("PGM1->FILE1", "PGM1->SRV1", "SRV1->FILE1", "PGM2->SRV1");
+    List<String> order = CompactGraph.of(graph).topologicalSort();
+
+    assertEquals(4, order.size());
+    for (Map.Entry<String, Set<String>> entry : graph.entrySet()) {
+      for (String dep : entry.getValue()) {
+        assertTrue(order.indexOf(entry.getKey()) < order.indexOf(dep), entry.getKey() + " before " + dep);
+      }
+    }
+  }
+
+  @Test
+  void sortMatchesMapVersionOnSyntheticGraph() {
+    Map<String, Set<String>> graph = GraphBenchmark.syntheticGraph(2000, 4, 7L);
+    assertEquals(new HashSet<>(GraphBenchmark.mapTopologicalSort(graph)),
+                 new HashSet<>(CompactGraph.of(graph).topologicalSort()));
+  }
+
+  @Test
+  void depsMissingAsKeysStillGetANode() {
+    Map<String, Set<String>> graph = new HashMap<>();
+    graph.put("PGM1", new HashSet<>(Arrays.asList("FILE1")));
+    assertEquals(Arrays.asList("PGM1", "FILE1"), CompactGraph.of(graph).topologicalSort());
+  }
+
+  @Test
+  void wavesOnlyDependOnEarlierWaves() {
+    List<List<String>> waves = CompactGraph.of(graph("PGM1->FILE1", "PGM1->SRV1", "SRV1->FILE1", "PGM2->SRV1", "PGM3")).buildWaves();
+
+    assertEquals(3, waves.size()); // Critical path FILE1 -> SRV1 -> PGM1/PGM2
+    assertEquals(new HashSet<>(Arrays.asList("FILE1", "PGM3")), new HashSet<>(waves.get(0)));
+    assertEquals(Arrays.asList("SRV1"), waves.get(1));
+    assertEquals(new HashSet<>(Arrays.asList("PGM1", "PGM2")), new HashSet<>(waves.get(2)));
+  }
+
+  @Test
+  void cyclesAreCondensedIntoOneBuildUnit() {
+    // SRV1 and SRV2 bind each other, PGM1 uses both, both use FILE1
+    CompactGraph compact = CompactGraph.of(graph("PGM1->SRV1", "SRV1->SRV2", "SRV2->SRV1", "SRV2->FILE1", "SRV1->FILE1"));
+
+    List<List<String>> cycles = compact.cycles();
+    assertEquals(1, cycles.size());
+    assertEquals(new HashSet<>(Arrays.asList("SRV1", "SRV2")), new HashSet<>(cycles.get(0)));
+
+    List<String> order = compact.topologicalSort();
+    assertEquals(4, order.size());
+    assertEquals("PGM1", order.get(0));
+    assertEquals("FILE1", order.get(3));
+
+    List<List<String>> waves = compact.buildWaves();
+    assertEquals(3, waves.size());
+    assertEquals(new HashSet<>(Arrays.asList("SRV1", "SRV2")), new HashSet<>(waves.get(1)));
+  }
+
+  @Test
+  void impactedByReturnsTransitiveDependentsInRebuildOrder() {
+    CompactGraph compact = CompactGraph.of(graph("PGM1->SRV1", "SRV1->FILE1", "PGM2->FILE1", "PGM3->FILE2", "VIEW1->FILE1", "PGM4->VIEW1"));
+
+    List<String> impacted = compact.impactedBy("FILE1");
+    assertEquals(new HashSet<>(Arrays.asList("SRV1", "PGM1", "PGM2", "VIEW1", "PGM4")), new HashSet<>(impacted));
+    assertTrue(impacted.indexOf("SRV1") < impacted.indexOf("PGM1"));
+    assertTrue(impacted.indexOf("VIEW1") < impacted.indexOf("PGM4"));
+
+    assertTrue(compact.impactedBy("PGM3").isEmpty());
+    assertEquals(null, compact.impactedBy("NOTTHERE"));
+  }
+
+  @Test
+  void deepChainDoesNotOverflowTheStack() {
+    Map<String, Set<String>> graph = new HashMap<>();
+    int length = 300000;
+    for (int i = 0; i < length; i++) {
+      graph.put("OBJ" + i, new HashSet<>(Arrays.asList("OBJ" + ((i + 1) % length)))); // One big cycle
+    }
+    CompactGraph compact = CompactGraph.of(graph);
+    assertEquals(1, compact.componentCount());
+    assertEquals(length, compact.topologicalSort().size());
+  }
+}
@@ -0,0 +1,159 @@
+package com.github.kraudy;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CompileExecutorTest {
+
+  // Records the order objects were compiled in, fails the ones in failing
+  static class FakeCompiler implements CompileExecutor.Compiler {
+    final List<String> log;
+    final Set<String> failing;
+
+    FakeCompiler(List<String> log, String... failing) {
+      this.log = log;
+      this.failing = new HashSet<>(Arrays.asList(failing));
+    }
+
+    @Override
+    public boolean compile(String objKey) throws Exception {
+      Thread.sleep(5);
+      log.add(objKey);
+      return !failing.contains(objKey);
+    }
+  }
+
+  static List<CompileExecutor.Compiler> sessions(int count, List<String> log, String... failing) {
+    List<CompileExecutor.Compiler> sessions = new ArrayList<>();
+    for (int i = 0; i < count; i++) sessions.add(new FakeCompiler(log, failing));
+    return sessions;
+  }
+
+  @Test
+  void dependenciesAreBuiltFirstAndNonTargetsOnlyOrder() throws Exception {
+    Map<String, Set<String>> graph = CompactGraphTest.graph("PGM1->SRV1", "SRV1->MOD1", "PGM2->FILE1", "FILE1->SRV1", "PGM3");
+    List<String> log = Collections.synchronizedList(new ArrayList<>());
+    Set<String> targets = new HashSet<>(Arrays.asList("PGM1", "SRV1", "MOD1", "PGM2", "PGM3")); // FILE1 is not rebuilt
+
+    CompileExecutor.Result result = new CompileExecutor(CompactGraph.of(graph), targets, sessions(3, log)).run();
+
+    assertEquals(targets, new HashSet<>(result.compiled));
+    assertEquals(5, log.size());
+    assertTrue(log.indexOf("MOD1") < log.indexOf("SRV1"));
+    assertTrue(log.indexOf("SRV1") < log.indexOf("PGM1"));
+    assertTrue(log.indexOf("SRV1") < log.indexOf("PGM2"));
+    assertTrue(result.failed.isEmpty() && result.skipped.isEmpty());
+  }
+
+  @Test
+  void failuresSkipEverythingThatDependsOnThem() throws Exception {
+    Map<String, Set<String>> graph = CompactGraphTest.graph("PGM1->SRV1", "PGM2->PGM1", "SRV1->MOD1", "PGM3->MOD1", "PGM4");
+    List<String> log = Collections.synchronizedList(new ArrayList<>());
+    Set<String> targets = graph.keySet();
+
+    CompileExecutor.Result result = new CompileExecutor(CompactGraph.of(graph), targets, sessions(2, log, "SRV1")).run();
+
+    assertEquals(Arrays.asList("SRV1"), result.failed);
+    assertEquals(new HashSet<>(Arrays.asList("PGM1", "PGM2")), new HashSet<>(result.skipped));
+    assertEquals(new HashSet<>(Arrays.asList("MOD1", "PGM3", "PGM4")), new HashSet<>(result.compiled));
+    assertTrue(!log.contains("PGM1") && !log.contains("PGM2"));
+  }
+
+  @Test
+  void independentObjectsRunConcurrently() throws Exception {
+    List<String> edges = new ArrayList<>();
+    for (int i = 0; i < 40; i++) edges.add("PGM" + i + "->FILE1");
+    Map<String, Set<String>> graph = CompactGraphTest.graph(edges.toArray(new String[0]));
+    List<String> log = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger peak = new AtomicInteger();
+    CountDownLatch overlap = new CountDownLatch(2); // The first PGMs wait for a second one, never longer than 5 s
+    List<CompileExecutor.Compiler> sessions = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      sessions.add(new FakeCompiler(log) {
+        @Override
+        public boolean compile(String objKey) throws Exception {
+          peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          try {
+            if (objKey.startsWith("PGM")) { // FILE1 is alone in the first wave, nothing could overlap it
+              overlap.countDown();
+              overlap.await(5, TimeUnit.SECONDS);
+            }
+            return super.compile(objKey);
+          } finally {
+            inFlight.decrementAndGet();
+          }
+        }
+      });
+    }
+
+    CompileExecutor.Result result = new CompileExecutor(CompactGraph.of(graph), graph.keySet(), sessions).run();
+
+    assertEquals(41, result.compiled.size());
+    assertTrue(peak.get() > 1, "Peak compiles in flight: " + peak.get());
+  }
+
+  @Test
+  void compilerThatThrowsIsReportedAndNotReused() throws Exception {
+    Map<String, Set<String>> graph = CompactGraphTest.graph("PGM1->MOD1", "PGM2->MOD2", "PGM3->PGM2", "PGM4");
+    List<String> log = Collections.synchronizedList(new ArrayList<>());
+    List<String> calls = Collections.synchronizedList(new ArrayList<>()); // session:object, in call order
+    IllegalStateException lost = new IllegalStateException("Connection dropped");
+    List<CompileExecutor.Compiler> sessions = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      int session = i;
+      sessions.add(new FakeCompiler(log) {
+        @Override
+        public boolean compile(String objKey) throws Exception {
+          calls.add(session + ":" + objKey);
+          if (objKey.equals("MOD2")) throw lost;
+          return super.compile(objKey);
+        }
+      });
+    }
+
+    CompileExecutor.Result result = new CompileExecutor(CompactGraph.of(graph), graph.keySet(), sessions).run();
+
+    assertEquals(Arrays.asList("MOD2"), result.failed);
+    assertEquals(Collections.singletonMap("MOD2", lost), result.errors);
+    assertEquals(new HashSet<>(Arrays.asList("PGM2", "PGM3")), new HashSet<>(result.skipped));
+    assertEquals(new HashSet<>(Arrays.asList("MOD1", "PGM1", "PGM4")), new HashSet<>(result.compiled));
+    String broken = calls.stream().filter(call -> call.endsWith(":MOD2")).findFirst().get();
+    String session = broken.substring(0, broken.indexOf(':') + 1);
+    assertEquals(broken, calls.stream().filter(call -> call.startsWith(session)).reduce((first, last) -> last).get(),
+                 "Session reused after it threw: " + calls);
+    assertTrue(result.summary().endsWith(", 1 sessions lost"));
+  }
+
+  @Test
+  void losingEverySessionSkipsWhatIsLeft() throws Exception {
+    Map<String, Set<String>> graph = CompactGraphTest.graph("PGM1->MOD1", "PGM2->MOD1");
+    List<String> log = Collections.synchronizedList(new ArrayList<>());
+    List<CompileExecutor.Compiler> sessions = Collections.singletonList(new FakeCompiler(log) {
+      @Override
+      public boolean compile(String objKey) throws Exception {
+        if (!log.isEmpty()) throw new IllegalStateException("Connection dropped");
+        return super.compile(objKey);
+      }
+    });
+
+    CompileExecutor.Result result = new CompileExecutor(CompactGraph.of(graph), graph.keySet(), sessions).run();
+
+    assertEquals(Arrays.asList("MOD1"), result.compiled);
+    assertEquals(1, result.failed.size());
+    assertEquals(result.failed, new ArrayList<>(result.errors.keySet()));
+    assertEquals(1, result.skipped.size()); // The other PGM never got a session
+  }
+}
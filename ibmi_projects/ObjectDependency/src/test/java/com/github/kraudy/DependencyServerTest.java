@@ -0,0 +1,87 @@
+package com.github.kraudy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class DependencyServerTest {
+  private DependencyServer server;
+
+  @BeforeEach
+  void start() throws Exception {
+    server = new DependencyServer(0, new Metrics());
+    server.start();
+  }
+
+  @AfterEach
+  void stop() {
+    server.stop();
+  }
+
+  private String get(String path, int expectedStatus) throws Exception {
+    HttpURLConnection http = (HttpURLConnection) new URL("http://localhost:" + server.port() + path).openConnection();
+    assertEquals(expectedStatus, http.getResponseCode());
+    try (InputStream in = expectedStatus == 200 ? http.getInputStream() : http.getErrorStream()) {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      for (int read; (read = in.read(buffer)) != -1; ) body.write(buffer, 0, read);
+      return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  @Test
+  void answersFromThePublishedGraph() throws Exception {
+    get("/status", 503);
+    server.publish(CompactGraph.of(CompactGraphTest.graph("LIB/PGM1/*PGM->LIB/FILE1/*FILE", "LIB/PGM2/*PGM->LIB/PGM1/*PGM")));
+
+    assertEquals("{\"impactedBy\":\"LIB/FILE1/*FILE\",\"impacted\":[\"LIB/PGM1/*PGM\",\"LIB/PGM2/*PGM\"]}",
+                 get("/impacted?obj=lib/file1/file", 200));
+    assertEquals("{\"object\":\"LIB/PGM1/*PGM\",\"dependsOn\":[\"LIB/FILE1/*FILE\"]}", get("/deps?obj=LIB/PGM1/*PGM", 200));
+    assertTrue(get("/order", 200).startsWith("{\"order\":[\"LIB/FILE1/*FILE\",\"LIB/PGM1/*PGM\",\"LIB/PGM2/*PGM\"]"));
+    get("/impacted?obj=LIB/NOPE/*PGM", 404);
+
+    server.publish(CompactGraph.of(CompactGraphTest.graph("LIB/PGM3/*PGM")));
+    assertTrue(get("/status", 200).startsWith("{\"nodes\":1,\"edges\":0,"));
+  }
+
+  @Test
+  void concurrentQueriesOnAFreshlyPublishedGraphAgree() throws Exception {
+    // A chain with a cycle at the bottom, so both the dependents and the component index are needed
+    List<String> edges = new ArrayList<>();
+    for (int i = 1; i < 300; i++) {
+      edges.add("LIB/PGM" + i + "/*PGM->LIB/PGM" + (i - 1) + "/*PGM");
+    }
+    edges.add("LIB/PGM0/*PGM->LIB/PGM1/*PGM");
+    server.publish(CompactGraph.of(CompactGraphTest.graph(edges.toArray(new String[0]))));
+
+    ExecutorService clients = Executors.newFixedThreadPool(8);
+    try {
+      List<Callable<String>> queries = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        queries.add(() -> get("/impacted?obj=LIB/PGM0/*PGM", 200));
+        queries.add(() -> get("/order", 200));
+      }
+      List<Future<String>> answers = clients.invokeAll(queries);
+      for (int i = 2; i < answers.size(); i++) {
+        assertEquals(answers.get(i % 2).get(), answers.get(i).get());
+      }
+      assertTrue(answers.get(0).get().contains("\"LIB/PGM299/*PGM\""));
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+}
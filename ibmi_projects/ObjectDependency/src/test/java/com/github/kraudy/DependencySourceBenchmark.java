@@ -0,0 +1,42 @@
+package com.github.kraudy;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Graph building throughput against SyntheticDependencySource, no system needed.
+ * Run this class' main with target/test-classes, target/classes and the test classpath (mvn dependency:build-classpath).
+ * Optional args: fanOut latencyMicros parallelism. With a latency, the per object run shows what --parallelism buys.
+ */
+public class DependencySourceBenchmark {
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static void run(String label, int objects, int fanOut, long latencyMicros, int parallelism, boolean perObject) throws Exception {
+    long base = usedHeap();
+    ObjectDependency dependencies = new ObjectDependency(new SyntheticDependencySource(objects, fanOut, 42L, latencyMicros));
+    long start = System.nanoTime();
+    Map<String, Set<String>> graph = dependencies.buildGraph(Arrays.asList("BENCHLIB"), parallelism, perObject);
+    long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+    long heap = usedHeap() - base;
+    System.err.println(label + " " + objects + " objects: " + elapsedMs + " ms, " + (objects * 1000L / elapsedMs) +
+                       " objects/sec, graph heap " + (heap >> 20) + " MB (" + graph.size() + " nodes)");
+  }
+
+  public static void main(String... args) throws Exception {
+    int fanOut = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    long latencyMicros = args.length > 1 ? Long.parseLong(args[1]) : 0;
+    int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+    run("warmup", 10000, fanOut, 0, 1, false);
+    for (int objects : new int[]{1000, 10000, 100000}) {
+      run("bulk", objects, fanOut, latencyMicros, 1, false);
+      run("per-object x1", objects, fanOut, latencyMicros, 1, true);
+      run("per-object x" + parallelism, objects, fanOut, latencyMicros, parallelism, true);
+    }
+  }
+}
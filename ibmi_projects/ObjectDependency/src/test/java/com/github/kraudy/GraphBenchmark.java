@@ -0,0 +1,148 @@
+package com.github.kraudy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Map based Kahn vs CompactGraph on synthetic dependency graphs.
+ * Sort time:   mvn test-compile, then run org.openjdk.jmh.Main GraphBenchmark with target/test-classes,
+ *              target/classes and the test classpath (mvn dependency:build-classpath). Add -prof gc for allocation.
+ * Heap in use: run this class' main with the same classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+
+  @Param({"10000", "100000"})
+  int objects;
+
+  @Param({"4"})
+  int fanOut;
+
+  Map<String, Set<String>> graph;
+  CompactGraph compact;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    graph = syntheticGraph(objects, fanOut, 42L);
+    compact = CompactGraph.of(graph);
+  }
+
+  @Benchmark
+  public List<String> mapSort() {
+    return mapTopologicalSort(graph);
+  }
+
+  @Benchmark
+  public List<String> compactSort() {
+    return compact.topologicalSort();
+  }
+
+  @Benchmark
+  public List<String> compactBuildAndSort() {
+    return CompactGraph.of(graph).topologicalSort();
+  }
+
+  /* Acyclic: every object only depends on objects with a higher number, keys look like the real ones */
+  static Map<String, Set<String>> syntheticGraph(int objects, int fanOut, long seed) {
+    Random random = new Random(seed);
+    Map<String, Set<String>> graph = new HashMap<>();
+    for (int i = 0; i < objects; i++) {
+      Set<String> deps = new HashSet<>();
+      for (int d = 0; d < fanOut && i + 1 < objects; d++) {
+        deps.add(key(i + 1 + random.nextInt(objects - i - 1)));
+      }
+      graph.put(key(i), deps);
+    }
+    return graph;
+  }
+
+  static String key(int i) {
+    return "BENCHLIB/OBJ" + i + "/" + (i % 3 == 0 ? "*FILE" : "*PGM");
+  }
+
+  // The HashMap/LinkedList version ObjectDependency used before CompactGraph
+  static List<String> mapTopologicalSort(Map<String, Set<String>> graph) {
+    Map<String, Integer> indegree = new HashMap<>();
+    for (String node : graph.keySet()) {
+      indegree.put(node, 0);
+    }
+    for (Set<String> deps : graph.values()) {
+      for (String dep : deps) {
+        indegree.put(dep, indegree.getOrDefault(dep, 0) + 1);
+      }
+    }
+
+    Queue<String> queue = new LinkedList<>();
+    for (Map.Entry<String, Integer> entry : indegree.entrySet()) {
+      if (entry.getValue() == 0) {
+        queue.add(entry.getKey());
+      }
+    }
+
+    List<String> order = new ArrayList<>();
+    while (!queue.isEmpty()) {
+      String node = queue.poll();
+      order.add(node);
+      for (String dep : graph.getOrDefault(node, new HashSet<>())) {
+        indegree.put(dep, indegree.get(dep) - 1);
+        if (indegree.get(dep) == 0) {
+          queue.add(dep);
+        }
+      }
+    }
+
+    if (order.size() != graph.size()) {
+      throw new RuntimeException("Cycle detected in dependencies");
+    }
+    return order;
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  public static void main(String... args) {
+    int fanOut = 4;
+    for (int objects : new int[]{10000, 100000, 300000}) {
+      long base = usedHeap();
+      Map<String, Set<String>> graph = syntheticGraph(objects, fanOut, 42L);
+      long mapHeap = usedHeap() - base;
+
+      CompactGraph compact = CompactGraph.of(graph);
+      long compactHeap = usedHeap() - base - mapHeap;
+
+      System.out.println(objects + " objects, " + compact.edgeCount() + " edges: map graph " + (mapHeap >> 20) +
+                         " MB, compact graph " + (compactHeap >> 20) + " MB (keys shared with the map)");
+      graph = null;
+      compact = null;
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.github.kraudy;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.kraudy.ObjectDependency.EdgeType;
+
+public class GraphDiffTest {
+
+  private static GraphSnapshot snapshot(Map<String, Set<String>> graph, Map<String, EdgeType> edgeTypes) {
+    return new GraphSnapshot(graph, new HashMap<>(), edgeTypes);
+  }
+
+  @Test
+  void listsAddedRemovedAndChangedNodesAndEdges() throws Exception {
+    Map<String, Set<String>> dev = CompactGraphTest.graph("A->B", "A->C", "B->C", "D->C");
+    Map<String, Set<String>> prod = CompactGraphTest.graph("A->B", "A->E", "B->C", "F->C");
+    Map<String, EdgeType> prodTypes = new HashMap<>();
+    prodTypes.put(ObjectDependency.edgeKey("B", "C"), EdgeType.BOUND_SRVPGM);
+
+    StringWriter out = new StringWriter();
+    GraphDiff.Summary summary = new GraphDiff(snapshot(dev, new HashMap<>()), snapshot(prod, prodTypes)).write(out);
+
+    assertEquals(String.join("\n",
+        "~\tN\tA",
+        "+\tE\tA\tE\tREFERENCE",
+        "-\tE\tA\tC\tREFERENCE",
+        "~\tN\tB",
+        "~\tE\tB\tC\tREFERENCE>BOUND_SRVPGM",
+        "-\tN\tD",
+        "-\tE\tD\tC\tREFERENCE",
+        "+\tN\tE",
+        "+\tN\tF",
+        "+\tE\tF\tC\tREFERENCE") + "\n", out.toString());
+    assertEquals(2, summary.addedNodes);
+    assertEquals(1, summary.removedNodes);
+    assertEquals(2, summary.changedNodes);
+    assertEquals(2, summary.addedEdges);
+    assertEquals(2, summary.removedEdges);
+    assertEquals(1, summary.changedEdges);
+  }
+
+  // Same graph under another library name, built by hand so it does not go through GraphDiff.renamed
+  private static String prodKey(String key) {
+    return key.startsWith("DEVLIB/") ? "PRODLIB" + key.substring("DEVLIB".length()) : key;
+  }
+
+  @Test
+  void renamedLibrariesMatchNodesAndEdges() throws Exception {
+    // Synthetic deps are seeded by library name, so prod is dev's graph copied under PRODLIB, not a second build
+    Map<String, Set<String>> dev = new ObjectDependency(new SyntheticDependencySource(2000, 4, 5L, 0))
+        .buildGraph(Arrays.asList("DEVLIB"), 1, false);
+    Map<String, EdgeType> devTypes = new HashMap<>();
+    Map<String, Set<String>> prod = new HashMap<>();
+    Map<String, EdgeType> prodTypes = new HashMap<>();
+    for (Map.Entry<String, Set<String>> node : dev.entrySet()) {
+      Set<String> deps = prod.computeIfAbsent(prodKey(node.getKey()), k -> new HashSet<>());
+      for (String dep : node.getValue()) {
+        deps.add(prodKey(dep));
+        if (devTypes.size() < 100) {
+          devTypes.put(ObjectDependency.edgeKey(node.getKey(), dep), EdgeType.BOUND_SRVPGM);
+          prodTypes.put(ObjectDependency.edgeKey(prodKey(node.getKey()), prodKey(dep)), EdgeType.BOUND_SRVPGM);
+        }
+      }
+    }
+    assertEquals(100, devTypes.size());
+
+    StringWriter unrenamed = new StringWriter();
+    assertEquals(dev.size(), new GraphDiff(snapshot(dev, devTypes), snapshot(prod, prodTypes)).write(unrenamed).addedNodes);
+
+    Map<String, String> renames = new HashMap<>();
+    renames.put("devlib", "prodlib");
+    StringWriter out = new StringWriter();
+    GraphDiff.Summary summary = new GraphDiff(GraphDiff.renamed(snapshot(dev, devTypes), renames), snapshot(prod, prodTypes)).write(out);
+    assertTrue(summary.isEmpty());
+    assertEquals("", out.toString());
+  }
+
+  @Test
+  void sameDepsInAnotherOrderAreNoDifference() throws Exception {
+    Map<String, Set<String>> dev = new HashMap<>();
+    dev.put("A", new HashSet<>(Arrays.asList("LIB/X/*PGM", "LIB/Y/*FILE", "LIB/Z/*SRVPGM")));
+    Map<String, Set<String>> prod = new HashMap<>();
+    prod.put("A", new LinkedHashSet<>(Arrays.asList("LIB/Z/*SRVPGM", "LIB/X/*PGM", "LIB/Y/*FILE")));
+    Map<String, EdgeType> types = new HashMap<>();
+    types.put(ObjectDependency.edgeKey("A", "LIB/Z/*SRVPGM"), EdgeType.BOUND_SRVPGM);
+
+    StringWriter out = new StringWriter();
+    assertTrue(new GraphDiff(snapshot(dev, types), snapshot(prod, new HashMap<>(types))).write(out).isEmpty());
+    assertEquals("", out.toString());
+  }
+}
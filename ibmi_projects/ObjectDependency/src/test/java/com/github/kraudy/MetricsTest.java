@@ -0,0 +1,37 @@
+package com.github.kraudy;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTest {
+
+  @Test
+  void recordsCountsRowsAndLatencyBuckets() {
+    Metrics metrics = new Metrics();
+    Metrics.Stat stat = metrics.stat("SYSTABLEDEP");
+    long now = System.nanoTime();
+    for (int i = 0; i < 99; i++) {
+      stat.record(now, 2, 20); // Well under a millisecond
+    }
+    stat.record(now - 50_000_000L, 1, 10); // 50 ms
+    stat.error();
+
+    assertEquals(100, stat.calls());
+    assertEquals(1, stat.errors());
+    assertEquals(199, stat.rows());
+    assertEquals(1990, stat.bytes());
+    assertTrue(stat.percentileMicros(0.5) <= 1024, "p50 " + stat.percentileMicros(0.5));
+    assertTrue(stat.percentileMicros(1.0) >= 50_000, "max " + stat.percentileMicros(1.0));
+    assertTrue(metrics.json().startsWith("{\"metrics\":[{\"name\":\"SYSTABLEDEP\",\"calls\":100,\"errors\":1,"));
+  }
+
+  @Test
+  void unusedStatsAreLeftOut() {
+    Metrics metrics = new Metrics();
+    metrics.stat("DSPPGMREF");
+    metrics.stat("SYSVIEWDEP").record(System.nanoTime(), 0, 0);
+    assertEquals(1, metrics.stats().size());
+    assertEquals("{\"metrics\":[]}", new Metrics().json());
+  }
+}
@@ -1,8 +1,28 @@
 package com.github.kraudy;
 
 import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+
+import picocli.CommandLine;
+
 /**
  * Unit test for simple App.
  */
@@ -15,4 +35,69 @@ public class ObjectDependencyTest {
   void testApp() {
       assertTrue(true);
   }
+
+  // Runs the command line over a synthetic catalog and returns what it wrote to stdout
+  private static byte[] stdout(String... args) {
+    ObjectDependency dependencies = new ObjectDependency(new SyntheticDependencySource(50, 3, 11L, 0));
+    new CommandLine(dependencies).parseArgs(args);
+    PrintStream out = System.out;
+    ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(captured, true));
+    try {
+      dependencies.dependencies();
+    } finally {
+      System.setOut(out);
+    }
+    return captured.toByteArray();
+  }
+
+  @Test
+  void exportToStdoutCarriesNothingButTheGraph() throws Exception {
+    Map<String, Set<String>> graph = new ObjectDependency(new SyntheticDependencySource(50, 3, 11L, 0))
+        .buildGraph(Arrays.asList("LIBA", "LIBB"), 1, true);
+    int edges = graph.values().stream().mapToInt(Set::size).sum();
+
+    File snapshot = File.createTempFile("snapshot", ".txt");
+    Files.delete(snapshot.toPath());
+    try {
+      // A full scan ("Scanned", "Resolved"), then one that reuses the snapshot ("Snapshot LIBA: ...")
+      for (int run = 0; run < 2; run++) {
+        byte[] out = stdout("-l", "LIBA", "LIBB", "--parallelism", "2", "--per-object", "--metrics",
+                            "--snapshot", snapshot.getPath(), "--export", "graphml");
+        assertTrue(new String(out, StandardCharsets.UTF_8).startsWith("<?xml"));
+        Document export = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(out));
+        assertEquals(graph.size(), export.getElementsByTagName("node").getLength());
+        assertEquals(edges, export.getElementsByTagName("edge").getLength());
+      }
+    } finally {
+      Files.deleteIfExists(snapshot.toPath());
+    }
+  }
+
+  @Test
+  void sharedOutfileLibraryIsRejectedWithParallelism() {
+    ObjectDependency dependencies = new ObjectDependency(new SyntheticDependencySource(50, 3, 11L, 0));
+    new CommandLine(dependencies).parseArgs("-l", "LIBA", "--parallelism", "2", "-o", "MYLIB");
+    IllegalArgumentException e = assertThrows(IllegalArgumentException.class, dependencies::run);
+    assertEquals("-o must be QTEMP when --parallelism is greater than 1.", e.getMessage());
+  }
+
+  @Test
+  void buildOrderPutsDependenciesFirst() throws Exception {
+    Map<String, Set<String>> graph = new ObjectDependency(new SyntheticDependencySource(50, 3, 11L, 0))
+        .buildGraph(Arrays.asList("LIBA"), 1, true);
+    CompactGraph compact = CompactGraph.of(graph);
+    List<String> order = ObjectDependency.buildOrder(compact);
+    Set<String> inCycles = new HashSet<>();
+    compact.cycles().forEach(inCycles::addAll);
+
+    assertEquals(graph.size(), order.size());
+    for (Map.Entry<String, Set<String>> node : graph.entrySet()) {
+      for (String dep : node.getValue()) {
+        if (inCycles.contains(dep) && inCycles.contains(node.getKey())) continue;
+        assertTrue(order.indexOf(dep) < order.indexOf(node.getKey()), dep + " after " + node.getKey());
+      }
+    }
+    assertTrue(ObjectDependency.orderJson(compact).startsWith("{\"order\":[\"" + order.get(0) + "\""));
+  }
 }
@@ -0,0 +1,218 @@
+package com.github.kraudy;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.kraudy.ObjectDependency.DepObject;
+import com.github.kraudy.ObjectDependency.EdgeType;
+import com.github.kraudy.ObjectDependency.ObjectType;
+
+import picocli.CommandLine;
+
+public class SyntheticDependencySourceTest {
+
+  static Map<String, Set<String>> build(int objects, int parallelism, boolean perObject) throws Exception {
+    ObjectDependency dependencies = new ObjectDependency(new SyntheticDependencySource(objects, 3, 11L, 0));
+    return dependencies.buildGraph(Arrays.asList("LIBA", "LIBB"), parallelism, perObject);
+  }
+
+  @Test
+  void bulkAndPerObjectScansGiveTheSameGraph() throws Exception {
+    Map<String, Set<String>> bulk = build(200, 1, false);
+    assertEquals(400, bulk.size());
+    assertEquals(bulk, build(200, 1, true));
+    assertEquals(bulk, build(200, 4, true));
+  }
+
+  @Test
+  void syntheticGraphIsAcyclic() throws Exception {
+    CompactGraph compact = CompactGraph.of(build(500, 1, false));
+    assertTrue(compact.cycles().isEmpty());
+    List<String> order = compact.topologicalSort();
+    assertEquals(1000, order.size());
+  }
+
+  @Test
+  void singleObjectRunOnlyResolvesWhatItReaches() throws Exception {
+    Map<String, Set<String>> full = build(2000, 1, false);
+    Map<String, Set<String>> reachable = new HashMap<>();
+    Deque<String> queue = new ArrayDeque<>(Arrays.asList("LIBA/OBJ40/*PGM", "LIBB/OBJ40/*PGM")); // --obj is looked up in every library
+    while (!queue.isEmpty()) {
+      String key = queue.poll();
+      if (reachable.containsKey(key)) continue;
+      reachable.put(key, full.get(key));
+      queue.addAll(full.get(key));
+    }
+
+    ObjectDependency dependencies = new ObjectDependency(new SyntheticDependencySource(2000, 3, 11L, 0));
+    Map<String, Set<String>> graph = dependencies.buildGraph(Arrays.asList("LIBA", "LIBB"), "OBJ40", ObjectDependency.ObjectType.PGM);
+    assertEquals(reachable, graph);
+    assertTrue(graph.size() < 1000, graph.size() + " of 4000 objects reached");
+  }
+
+  @Test
+  void fileRelationsAreMergedEvenForFilesOutsideTheScan() throws Exception {
+    AtomicInteger dspdbr = new AtomicInteger();
+    SyntheticDependencySource source = new SyntheticDependencySource(50, 2, 11L, 0) {
+      @Override
+      public List<DepObject> getObjects(String library, String objectName, ObjectType objectType) {
+        List<DepObject> objects = super.getObjects(library, objectName, objectType);
+        objects.add(new DepObject(library, "CUSTPF", "*FILE", "TABLE", ObjectType.TABLE, "2026-01-01 00:00:00.0"));
+        return objects;
+      }
+
+      @Override
+      public Map<String, Set<String>> getLibraryFileRelations(String library) {
+        dspdbr.incrementAndGet();
+        Map<String, Set<String>> relations = new HashMap<>();
+        relations.put("OTHERLIB/CUSTL1/*FILE", new HashSet<>(Arrays.asList(library + "/CUSTPF/*FILE"))); // DDS logical over a DDS physical
+        relations.put(library + "/OBJ6/*FILE", new HashSet<>(Arrays.asList(library + "/CUSTPF/*FILE")));
+        return relations;
+      }
+    };
+    ObjectDependency dependencies = new ObjectDependency(source);
+    Map<String, Set<String>> graph = dependencies.buildGraph(Arrays.asList("LIBA"), 1, false);
+
+    assertEquals(new HashSet<>(Arrays.asList("LIBA/CUSTPF/*FILE")), graph.get("OTHERLIB/CUSTL1/*FILE"));
+    assertTrue(graph.get("LIBA/OBJ6/*FILE").contains("LIBA/CUSTPF/*FILE"));
+    assertTrue(CompactGraph.of(graph).impactedBy("LIBA/CUSTPF/*FILE").containsAll(Arrays.asList("OTHERLIB/CUSTL1/*FILE", "LIBA/OBJ6/*FILE")));
+    assertEquals(1, dspdbr.get());
+
+    // Snapshot backed rescan with nothing changed: no DSPDBR, the logical in the unscanned library keeps its edge
+    Map<String, Set<String>> first = new HashMap<>(graph);
+    assertFalse(dependencies.refresh());
+    assertEquals(1, dspdbr.get());
+    assertEquals(first, dependencies.graph());
+    assertTrue(CompactGraph.of(dependencies.graph()).impactedBy("LIBA/CUSTPF/*FILE").contains("OTHERLIB/CUSTL1/*FILE"));
+  }
+
+  @Test
+  void bindingsAreTypedEdgesThatSurviveASnapshot() throws Exception {
+    SyntheticDependencySource source = new SyntheticDependencySource(50, 2, 11L, 0) {
+      @Override
+      public Map<String, Map<String, EdgeType>> getLibraryBindings(String library) {
+        Map<String, EdgeType> bound = new HashMap<>();
+        bound.put("UTILS/DATEFMT/*SRVPGM", EdgeType.BOUND_SRVPGM);
+        bound.put(library + "/OBJ5/*MODULE", EdgeType.BOUND_MODULE);
+        Map<String, Map<String, EdgeType>> bindings = new HashMap<>();
+        bindings.put(library + "/OBJ0/*PGM", bound);
+        return bindings;
+      }
+    };
+    Map<String, Set<String>> graph = new ObjectDependency(source).buildGraph(Arrays.asList("LIBA"), 1, false);
+    assertTrue(graph.get("LIBA/OBJ0/*PGM").containsAll(Arrays.asList("UTILS/DATEFMT/*SRVPGM", "LIBA/OBJ5/*MODULE")));
+
+    Map<String, EdgeType> edgeTypes = new HashMap<>();
+    edgeTypes.put(ObjectDependency.edgeKey("LIBA/OBJ0/*PGM", "UTILS/DATEFMT/*SRVPGM"), EdgeType.BOUND_SRVPGM);
+    File file = File.createTempFile("snapshot", ".txt");
+    try {
+      new GraphSnapshot(graph, new HashMap<>(), edgeTypes).save(file);
+      GraphSnapshot loaded = GraphSnapshot.load(file);
+      assertEquals(graph, loaded.graph());
+      assertEquals(EdgeType.BOUND_SRVPGM, loaded.edgeType("LIBA/OBJ0/*PGM", "UTILS/DATEFMT/*SRVPGM"));
+      assertEquals(EdgeType.REFERENCE, loaded.edgeType("LIBA/OBJ0/*PGM", "LIBA/OBJ5/*MODULE"));
+    } finally {
+      Files.delete(file.toPath());
+    }
+  }
+
+  @Test
+  void aPollWithAFailedLibraryScanKeepsTheLastGoodGraph() throws Exception {
+    Set<String> unreachable = ConcurrentHashMap.newKeySet();
+    SyntheticDependencySource source = new SyntheticDependencySource(50, 2, 11L, 0) {
+      @Override
+      public List<DepObject> getObjects(String library, String objectName, ObjectType objectType) {
+        if (unreachable.contains(library)) throw new IllegalStateException("Connection lost");
+        return super.getObjects(library, objectName, objectType);
+      }
+    };
+    ObjectDependency dependencies = new ObjectDependency(source);
+    Map<String, Set<String>> good = new HashMap<>(dependencies.buildGraph(Arrays.asList("LIBA", "LIBB"), 2, false));
+
+    unreachable.add("LIBB");
+    assertFalse(dependencies.refresh());
+    assertEquals(good, dependencies.graph());
+
+    unreachable.clear();
+    assertFalse(dependencies.refresh()); // Back to complete, but nothing changed
+    assertEquals(good, dependencies.graph());
+  }
+
+  @Test
+  void snapshotRescanOnlyResolvesNewOrChangedObjects() throws Exception {
+    Set<String> deleted = ConcurrentHashMap.newKeySet();
+    Set<String> changed = ConcurrentHashMap.newKeySet();
+    AtomicInteger listed = new AtomicInteger();
+    List<String> resolved = Collections.synchronizedList(new ArrayList<>());
+    SyntheticDependencySource source = new SyntheticDependencySource(50, 2, 11L, 0) {
+      @Override
+      public List<DepObject> getObjects(String library, String objectName, ObjectType objectType) {
+        listed.incrementAndGet();
+        List<DepObject> objects = new ArrayList<>();
+        for (DepObject obj : super.getObjects(library, objectName, objectType)) {
+          if (deleted.contains(obj.name)) continue;
+          objects.add(changed.contains(obj.name)
+              ? new DepObject(obj.library, obj.name, obj.type, obj.attribute, obj.objectType, "2026-02-01 00:00:00.0") : obj);
+        }
+        return objects;
+      }
+
+      @Override
+      public Set<String> getDeps(DepObject obj) {
+        resolved.add(obj.key());
+        Set<String> deps = new HashSet<>(super.getDeps(obj));
+        if (changed.contains(obj.name)) deps.add("LIBA/NEWFILE/*FILE"); // Recompiled over a new file
+        return deps;
+      }
+    };
+    File snapshot = File.createTempFile("snapshot", ".txt");
+    Files.delete(snapshot.toPath());
+    try {
+      String[] args = {"-l", "LIBA", "--per-object", "--snapshot", snapshot.getPath(), "--json"};
+      ObjectDependency first = new ObjectDependency(source);
+      new CommandLine(first).parseArgs(args);
+      first.dependencies();
+      assertEquals(1, listed.get());
+      assertEquals(50, resolved.size());
+      assertTrue(snapshot.exists());
+
+      deleted.add("OBJ0"); // Nothing depends on OBJ0, the deps of object i all have a higher number
+      changed.add("OBJ1");
+      listed.set(0);
+      resolved.clear();
+      ObjectDependency second = new ObjectDependency(source);
+      new CommandLine(second).parseArgs(args);
+      second.dependencies();
+
+      assertEquals(1, listed.get());
+      assertEquals(Arrays.asList("LIBA/OBJ1/*PGM"), resolved); // Unchanged objects cost no host call
+      Map<String, Set<String>> expected = new HashMap<>(first.graph());
+      expected.remove("LIBA/OBJ0/*PGM");
+      Set<String> obj1 = new HashSet<>(expected.get("LIBA/OBJ1/*PGM"));
+      obj1.add("LIBA/NEWFILE/*FILE");
+      expected.put("LIBA/OBJ1/*PGM", obj1);
+      expected.put("LIBA/NEWFILE/*FILE", new HashSet<>());
+      assertEquals(expected, second.graph());
+      assertEquals(expected, GraphSnapshot.load(snapshot).graph());
+    } finally {
+      Files.deleteIfExists(snapshot.toPath());
+    }
+  }
+}